@@ -0,0 +1,76 @@
+package com.amigoscode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerListDataAccessServiceBenchmark {
+
+    // the service starts with two seeded customers, the rest are added in setUp
+    @Param({"2", "10000"})
+    public int customers;
+
+    private CustomerListDataAccessService underTest;
+    private Integer lastId;
+    private String lastEmail;
+
+    @Setup
+    public void setUp() {
+        underTest = new CustomerListDataAccessService();
+        List<Customer> extra = IntStream.rangeClosed(3, customers)
+                .mapToObj(id -> new Customer(
+                        id,
+                        "Customer " + id,
+                        "customer-" + id + "@gmail.com",
+                        "password",
+                        30,
+                        Gender.FEMALE
+                ))
+                .toList();
+        underTest.insertCustomers(extra);
+
+        Customer last = underTest.selectAllCustomers()
+                .get(underTest.selectAllCustomers().size() - 1);
+        lastId = last.getId();
+        lastEmail = last.getEmail();
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return underTest.selectCustomerById(lastId);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectUserByEmail() {
+        return underTest.selectUserByEmail(lastEmail);
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithEmail() {
+        return underTest.existsCustomerWithEmail(lastEmail);
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithId() {
+        return underTest.existsCustomerWithId(lastId);
+    }
+}
@@ -0,0 +1,101 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerMappingBenchmark {
+
+    private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private final ObjectWriter customerDTOWriter = new ObjectMapper().writerFor(CustomerDTO.class);
+
+    private Customer customer;
+    private CustomerDTO customerDTO;
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        customer = new Customer(
+                1, "Alex", "alex@gmail.com", "password", 21, Gender.MALE, "22222"
+        );
+        customer.setVersion(0);
+        customerDTO = customerDTOMapper.apply(customer);
+        resultSet = customerRow(customer);
+    }
+
+    @Benchmark
+    public CustomerDTO dtoMapperApply() {
+        return customerDTOMapper.apply(customer);
+    }
+
+    @Benchmark
+    public Customer rowMapperMapRow() throws SQLException {
+        return customerRowMapper.mapRow(resultSet, 1);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomerDTO() throws JsonProcessingException {
+        return customerDTOWriter.writeValueAsBytes(customerDTO);
+    }
+
+    // an in-memory ResultSet positioned on a single row, so mapRow is
+    // measured without a driver or a mocking framework in the way
+    private static CachedRowSet customerRow(Customer customer) throws SQLException {
+        String[] columns = {
+                "id", "name", "email", "password", "age", "gender", "profile_image_id", "version",
+                "token_version"
+        };
+        int[] types = {
+                Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                Types.INTEGER
+        };
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            metaData.setColumnName(i + 1, columns[i]);
+            metaData.setColumnType(i + 1, types[i]);
+        }
+
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.setMetaData(metaData);
+        rowSet.moveToInsertRow();
+        rowSet.updateInt("id", customer.getId());
+        rowSet.updateString("name", customer.getName());
+        rowSet.updateString("email", customer.getEmail());
+        rowSet.updateString("password", customer.getPassword());
+        rowSet.updateInt("age", customer.getAge());
+        rowSet.updateString("gender", customer.getGender().name());
+        rowSet.updateString("profile_image_id", customer.getProfileImageId());
+        rowSet.updateInt("version", customer.getVersion());
+        rowSet.updateInt("token_version", customer.getTokenVersion());
+        rowSet.insertRow();
+        rowSet.moveToCurrentRow();
+        rowSet.first();
+        return rowSet;
+    }
+}
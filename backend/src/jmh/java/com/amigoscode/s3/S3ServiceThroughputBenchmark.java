@@ -0,0 +1,110 @@
+package com.amigoscode.s3;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.file.PathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// A burst of profile image downloads against a slow S3, served either by a
+// pool the size of Tomcat's default (200 platform threads) or by one virtual
+// thread per request, which is what spring.threads.virtual.enabled switches to.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class S3ServiceThroughputBenchmark {
+
+    private static final String BUCKET = "customer";
+    private static final String KEY = "profile-images/1/image";
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"50"})
+    public int s3LatencyMillis;
+
+    @Param({"1000"})
+    public int concurrentRequests;
+
+    private Path root;
+    private S3Service s3Service;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("s3-throughput");
+        // nothing is small enough to be cached, every download pays the latency
+        S3ObjectCache objectCache = new S3ObjectCache(
+                DataSize.ofMegabytes(1),
+                DataSize.ofBytes(0),
+                false,
+                new SimpleMeterRegistry()
+        );
+        s3Service = new S3Service(
+                new FakeS3(root, Duration.ofMillis(s3LatencyMillis)),
+                new FakeS3Async(root, Duration.ofMillis(s3LatencyMillis)),
+                objectCache,
+                TOMCAT_MAX_THREADS,
+                DataSize.ofMegabytes(8),
+                DataSize.ofMegabytes(5),
+                4,
+                4,
+                "virtual".equals(threads)
+        );
+        s3Service.putObejct(BUCKET, KEY, new byte[16 * 1024]);
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        s3Service.destroy();
+        PathUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public long burst() throws Exception {
+        List<Future<Integer>> downloads = IntStream.range(0, concurrentRequests)
+                .mapToObj(i -> executor.submit(this::download))
+                .toList();
+        long bytes = 0;
+        for (Future<Integer> download : downloads) {
+            bytes += download.get();
+        }
+        return bytes;
+    }
+
+    private int download() throws IOException {
+        try (InputStream content = s3Service.getObjectStream(BUCKET, KEY)) {
+            return content.readAllBytes().length;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.amigoscode.auth;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 @RequestMapping("/api/v1/auth")
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthenticationController {
 
     private final AuthenticationService service;
@@ -26,4 +28,22 @@ public class AuthenticationController {
                 .header(HttpHeaders.AUTHORIZATION, response.token())
                 .body(response);
     }
+
+    @PostMapping("refresh")
+    public ResponseEntity<?> refresh(
+            @RequestBody RefreshTokenRequest request
+    ){
+        AuthenticationResponse response = service.refresh(request);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.AUTHORIZATION, response.token())
+                .body(response);
+    }
+
+    @PostMapping("logout")
+    public ResponseEntity<?> logout(
+            @RequestBody RefreshTokenRequest request
+    ){
+        service.logout(request);
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -4,5 +4,6 @@ import com.amigoscode.customer.CustomerDTO;
 
 public record AuthenticationResponse(
         String token,
-        CustomerDTO customerDTO
+        CustomerDTO customerDTO,
+        String refreshToken
 ) {}
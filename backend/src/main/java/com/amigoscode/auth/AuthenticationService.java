@@ -1,27 +1,43 @@
 package com.amigoscode.auth;
 
 import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerDAO;
 import com.amigoscode.customer.CustomerDTO;
 import com.amigoscode.customer.CustomerDTOMapper;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerService;
 import com.amigoscode.jwt.JWTUtil;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final CustomerDTOMapper mapper;
     private final JWTUtil jwtUtil;
+    private final RefreshTokenService refreshTokenService;
+    private final CustomerDAO customerDAO;
+    private final CustomerService customerService;
 
     public AuthenticationService(
             AuthenticationManager authenticationManager,
             CustomerDTOMapper mapper,
-            JWTUtil jwtUtil) {
+            JWTUtil jwtUtil,
+            RefreshTokenService refreshTokenService,
+            @Qualifier("cached") CustomerDAO customerDAO,
+            CustomerService customerService) {
         this.authenticationManager = authenticationManager;
         this.mapper = mapper;
         this.jwtUtil = jwtUtil;
+        this.refreshTokenService = refreshTokenService;
+        this.customerDAO = customerDAO;
+        this.customerService = customerService;
     }
 
     public AuthenticationResponse login(AuthenticationRequest request){
@@ -32,8 +48,46 @@ public class AuthenticationService {
                 )
         );
         Customer customer = (Customer) authenticate.getPrincipal();
+        return toResponse(customer, refreshTokenService.issue(customer.getId()));
+    }
+
+    // a new customer starts a session like a login does, so the refresh
+    // token keeps them signed in past the short lived access token
+    public AuthenticationResponse register(CustomerRegistrationRequest request){
+        customerService.addCustomer(request);
+        Customer customer = customerDAO.selectUserByEmail(request.email())
+                .orElseThrow(() -> new IllegalStateException(
+                        "customer with email [%s] not found after registration".formatted(request.email())
+                ));
+        return toResponse(customer, refreshTokenService.issue(customer.getId()));
+    }
+
+    // no password check here, the refresh token alone proves the session
+    public AuthenticationResponse refresh(RefreshTokenRequest request){
+        if (request == null || request.refreshToken() == null) {
+            throw new BadCredentialsException("invalid refresh token");
+        }
+        IssuedRefreshToken refreshToken = refreshTokenService.rotate(request.refreshToken());
+        Customer customer = customerDAO.selectCustomerById(refreshToken.customerId())
+                .orElseThrow(() -> new BadCredentialsException("invalid refresh token"));
+        return toResponse(customer, refreshToken);
+    }
+
+    public void logout(RefreshTokenRequest request){
+        if (request != null && request.refreshToken() != null) {
+            refreshTokenService.revoke(request.refreshToken());
+        }
+    }
+
+    private AuthenticationResponse toResponse(Customer customer, IssuedRefreshToken refreshToken) {
         CustomerDTO customerDTO = mapper.apply(customer);
-        String token = jwtUtil.issueToken(customerDTO.username(), customerDTO.roles());
-        return new AuthenticationResponse(token, customerDTO);
+        String token = jwtUtil.issueToken(
+                customerDTO.username(),
+                customer.getId(),
+                customer.getTokenVersion(),
+                refreshToken.familyId().toString(),
+                customerDTO.roles()
+        );
+        return new AuthenticationResponse(token, customerDTO, refreshToken.token());
     }
 }
@@ -0,0 +1,9 @@
+package com.amigoscode.auth;
+
+import java.util.UUID;
+
+public record IssuedRefreshToken(
+        String token,
+        UUID familyId,
+        Integer customerId
+) {}
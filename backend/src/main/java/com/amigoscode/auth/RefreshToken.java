@@ -0,0 +1,13 @@
+package com.amigoscode.auth;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record RefreshToken(
+        byte[] tokenHash,
+        UUID familyId,
+        Integer customerId,
+        Instant expiresAt,
+        Instant usedAt,
+        Instant revokedAt
+) {}
@@ -0,0 +1,15 @@
+package com.amigoscode.auth;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenDAO {
+    void insertRefreshToken(RefreshToken refreshToken);
+    Optional<RefreshToken> selectRefreshToken(byte[] tokenHash);
+    Optional<RefreshToken> markRefreshTokenUsed(byte[] tokenHash, Instant now);
+    void revokeFamily(UUID familyId, Instant now);
+    List<UUID> selectFamiliesRevokedSince(Instant since);
+    int deleteExpiredRefreshTokens(Instant now);
+}
@@ -0,0 +1,115 @@
+package com.amigoscode.auth;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class RefreshTokenJDBCDataAccessService implements RefreshTokenDAO {
+
+    private static final RowMapper<RefreshToken> REFRESH_TOKEN_ROW_MAPPER = (rs, rowNum) -> new RefreshToken(
+            rs.getBytes("token_hash"),
+            rs.getObject("family_id", UUID.class),
+            rs.getInt("customer_id"),
+            rs.getTimestamp("expires_at").toInstant(),
+            toInstant(rs.getTimestamp("used_at")),
+            toInstant(rs.getTimestamp("revoked_at"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RefreshTokenJDBCDataAccessService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertRefreshToken(RefreshToken refreshToken) {
+        var sql = """
+                INSERT INTO refresh_token(token_hash,family_id,customer_id,expires_at)
+                VALUES (?,?,?,?)
+                """;
+        jdbcTemplate.update(
+                sql,
+                refreshToken.tokenHash(),
+                refreshToken.familyId(),
+                refreshToken.customerId(),
+                Timestamp.from(refreshToken.expiresAt())
+        );
+    }
+
+    @Override
+    public Optional<RefreshToken> selectRefreshToken(byte[] tokenHash) {
+        var sql = """
+                SELECT token_hash,family_id,customer_id,expires_at,used_at,revoked_at
+                FROM refresh_token
+                WHERE token_hash = ?
+                """;
+        return jdbcTemplate.query(sql, REFRESH_TOKEN_ROW_MAPPER, (Object) tokenHash)
+                .stream().findFirst();
+    }
+
+    // the conditional update is what makes a token single use, of two
+    // concurrent refreshes with the same token only one gets the row back
+    @Override
+    public Optional<RefreshToken> markRefreshTokenUsed(byte[] tokenHash, Instant now) {
+        var sql = """
+                UPDATE refresh_token SET used_at = ?
+                WHERE token_hash = ?
+                AND used_at IS NULL
+                AND revoked_at IS NULL
+                AND expires_at > ?
+                RETURNING token_hash,family_id,customer_id,expires_at,used_at,revoked_at
+                """;
+        return jdbcTemplate.query(
+                        sql,
+                        REFRESH_TOKEN_ROW_MAPPER,
+                        Timestamp.from(now),
+                        tokenHash,
+                        Timestamp.from(now)
+                )
+                .stream().findFirst();
+    }
+
+    @Override
+    public void revokeFamily(UUID familyId, Instant now) {
+        var sql = """
+                UPDATE refresh_token SET revoked_at = ?
+                WHERE family_id = ?
+                AND revoked_at IS NULL
+                """;
+        jdbcTemplate.update(sql, Timestamp.from(now), familyId);
+    }
+
+    @Override
+    public List<UUID> selectFamiliesRevokedSince(Instant since) {
+        var sql = """
+                SELECT DISTINCT family_id
+                FROM refresh_token
+                WHERE revoked_at > ?
+                """;
+        return jdbcTemplate.query(
+                sql,
+                (rs, rowNum) -> rs.getObject("family_id", UUID.class),
+                Timestamp.from(since)
+        );
+    }
+
+    @Override
+    public int deleteExpiredRefreshTokens(Instant now) {
+        var sql = """
+                DELETE FROM refresh_token
+                WHERE expires_at <= ?
+                """;
+        return jdbcTemplate.update(sql, Timestamp.from(now));
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
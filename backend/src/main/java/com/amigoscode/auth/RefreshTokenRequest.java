@@ -0,0 +1,5 @@
+package com.amigoscode.auth;
+
+public record RefreshTokenRequest(
+        String refreshToken
+) {}
@@ -0,0 +1,125 @@
+package com.amigoscode.auth;
+
+import com.amigoscode.jwt.JWTUtil;
+import com.amigoscode.jwt.RevokedSessions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class RefreshTokenService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+    // revocations committed by another node while we were querying
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private final RefreshTokenDAO refreshTokenDAO;
+    private final RevokedSessions revokedSessions;
+    private final Duration refreshTokenTtl;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private volatile Instant lastRevocationSync;
+
+    public RefreshTokenService(
+            RefreshTokenDAO refreshTokenDAO,
+            RevokedSessions revokedSessions,
+            JWTUtil jwtUtil,
+            @Value("${jwt.refresh-token.ttl:30d}") Duration refreshTokenTtl
+    ) {
+        this.refreshTokenDAO = refreshTokenDAO;
+        this.revokedSessions = revokedSessions;
+        this.refreshTokenTtl = refreshTokenTtl;
+        // access tokens of families revoked before that are expired already
+        this.lastRevocationSync = Instant.now().minus(jwtUtil.getAccessTokenTtl());
+    }
+
+    public IssuedRefreshToken issue(Integer customerId) {
+        return issue(customerId, UUID.randomUUID(), Instant.now().plus(refreshTokenTtl));
+    }
+
+    public IssuedRefreshToken rotate(String token) {
+        byte[] tokenHash = hash(token);
+        Optional<RefreshToken> used = refreshTokenDAO.markRefreshTokenUsed(tokenHash, Instant.now());
+        if (used.isPresent()) {
+            // the new token inherits the expiry of the one it replaces, a
+            // session ends refresh-token.ttl after the login however often
+            // it is refreshed
+            return issue(used.get().customerId(), used.get().familyId(), used.get().expiresAt());
+        }
+
+        // a token that was already rotated is being replayed, whoever holds
+        // it is not necessarily the customer, so end the whole session
+        refreshTokenDAO.selectRefreshToken(tokenHash)
+                .filter(refreshToken -> refreshToken.usedAt() != null
+                        && refreshToken.revokedAt() == null)
+                .ifPresent(refreshToken -> {
+                    LOGGER.warn("refresh token reused, revoking session [{}] of customer with id [{}]",
+                            refreshToken.familyId(), refreshToken.customerId());
+                    revokeFamily(refreshToken.familyId());
+                });
+        throw new BadCredentialsException("invalid refresh token");
+    }
+
+    public void revoke(String token) {
+        refreshTokenDAO.selectRefreshToken(hash(token))
+                .ifPresent(refreshToken -> revokeFamily(refreshToken.familyId()));
+    }
+
+    private IssuedRefreshToken issue(Integer customerId, UUID familyId, Instant expiresAt) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenDAO.insertRefreshToken(new RefreshToken(
+                hash(token),
+                familyId,
+                customerId,
+                expiresAt,
+                null,
+                null
+        ));
+        return new IssuedRefreshToken(token, familyId, customerId);
+    }
+
+    private void revokeFamily(UUID familyId) {
+        refreshTokenDAO.revokeFamily(familyId, Instant.now());
+        revokedSessions.revoke(familyId.toString());
+    }
+
+    // picks up revocations made by other nodes, so the per request check
+    // stays an in-memory lookup
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:PT30S}")
+    public void syncRevokedSessions() {
+        Instant now = Instant.now();
+        refreshTokenDAO.selectFamiliesRevokedSince(lastRevocationSync.minus(SYNC_OVERLAP))
+                .forEach(familyId -> revokedSessions.revoke(familyId.toString()));
+        lastRevocationSync = now;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.purge-interval:PT1H}")
+    public void purgeExpiredRefreshTokens() {
+        int deleted = refreshTokenDAO.deleteExpiredRefreshTokens(Instant.now());
+        LOGGER.debug("purged {} expired refresh tokens", deleted);
+    }
+
+    static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.amigoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Only customers that exist are cached, so an insert never leaves a stale
+// "not found" behind. Every write drops the customer locally and tells the
+// other nodes through the invalidation channel. An email -> id entry only
+// counts while the id maps to a customer with that email, so a stale one
+// never answers.
+public class CachingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+    private final CustomerCacheInvalidationChannel invalidationChannel;
+    private final Cache<Integer, Customer> customersById;
+    private final Cache<String, Integer> idsByEmail;
+    // bumped by every invalidation, a load that overlapped one must not put
+    // the row it read back into the cache
+    private final AtomicLong generation = new AtomicLong();
+    // set while this node publishes, so a channel that delivers synchronously
+    // does not hand the write it already evicted back to it
+    private final ThreadLocal<Boolean> publishing = ThreadLocal.withInitial(() -> false);
+
+    public CachingCustomerDAO(
+            CustomerDAO delegate,
+            CustomerCacheInvalidationChannel invalidationChannel,
+            long maximumSize,
+            Duration expireAfterWrite,
+            MeterRegistry meterRegistry
+    ) {
+        this.delegate = delegate;
+        this.invalidationChannel = invalidationChannel;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customers-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "customer-ids-by-email");
+        invalidationChannel.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        return delegate.selectCustomers(pageRequest);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        Customer cached = customersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(new Customer(cached));
+        }
+        long loadGeneration = generation.get();
+        Optional<Customer> customer = delegate.selectCustomerById(id);
+        customer.ifPresent(loaded -> cache(loaded, loadGeneration));
+        return customer;
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Customer cached = customersById.getIfPresent(id);
+            if (cached != null) {
+                customers.add(new Customer(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+            List<Customer> loaded = delegate.selectCustomersByIds(missing);
+            loaded.forEach(customer -> cache(customer, loadGeneration));
+            customers.addAll(loaded);
+        }
+        customers.sort(Comparator.comparing(Customer::getId));
+        return customers;
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public List<String> insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public List<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return cachedByEmail(email) != null
+                || delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return customersById.getIfPresent(id) != null
+                || delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id) {
+        try {
+            delegate.deleteCustomerById(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            invalidate(update.getId());
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        Customer cached = cachedByEmail(email);
+        if (cached != null) {
+            return Optional.of(new Customer(cached));
+        }
+        long loadGeneration = generation.get();
+        Optional<Customer> customer = delegate.selectUserByEmail(email);
+        customer.ifPresent(loaded -> cache(loaded, loadGeneration));
+        return customer;
+    }
+
+    @Override
+    public void updateCustomerProfileImage(String profileImageId, Integer customerId) {
+        try {
+            delegate.updateCustomerProfileImage(profileImageId, customerId);
+        } finally {
+            invalidate(customerId);
+        }
+    }
+
+    private Customer cachedByEmail(String email) {
+        Integer id = idsByEmail.getIfPresent(email);
+        Customer cached = id == null ? null : customersById.getIfPresent(id);
+        return cached != null && cached.getEmail().equals(email) ? cached : null;
+    }
+
+    // the check runs under the entry's lock, so an invalidation either
+    // happens after the put and removes it, or before and prevents it
+    private void cache(Customer customer, long loadGeneration) {
+        boolean[] cached = new boolean[1];
+        customersById.asMap().compute(customer.getId(), (id, existing) -> {
+            if (generation.get() != loadGeneration) {
+                return existing;
+            }
+            cached[0] = true;
+            return new Customer(customer);
+        });
+        if (cached[0]) {
+            idsByEmail.put(customer.getEmail(), customer.getId());
+        }
+    }
+
+    private void invalidate(Integer id) {
+        invalidateLocally(id);
+        publishing.set(true);
+        try {
+            invalidationChannel.publish(id);
+        } finally {
+            publishing.remove();
+        }
+    }
+
+    private void onInvalidation(Integer id) {
+        if (!publishing.get()) {
+            invalidateLocally(id);
+        }
+    }
+
+    private void invalidateLocally(Integer id) {
+        generation.incrementAndGet();
+        if (id == null) {
+            customersById.invalidateAll();
+            idsByEmail.invalidateAll();
+            return;
+        }
+        Customer removed = customersById.asMap().remove(id);
+        if (removed != null) {
+            idsByEmail.asMap().remove(removed.getEmail(), id);
+        }
+    }
+}
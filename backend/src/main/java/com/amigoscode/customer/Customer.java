@@ -63,6 +63,19 @@ public class Customer implements UserDetails {
     )
     private String profileImageId;
 
+    @Version
+    @Column(
+            nullable = false
+    )
+    private Integer version;
+
+    // bumped whenever the identity a token asserts changes, tokens carrying
+    // an older value are no longer accepted
+    @Column(
+            nullable = false
+    )
+    private Integer tokenVersion = 0;
+
     public Customer() {}
 
     public Customer(Integer id,
@@ -102,6 +115,18 @@ public class Customer implements UserDetails {
         this.profileImageId = profileImageId;
     }
 
+    public Customer(Customer customer) {
+        this(customer.id,
+                customer.name,
+                customer.email,
+                customer.password,
+                customer.age,
+                customer.gender,
+                customer.profileImageId);
+        this.version = customer.version;
+        this.tokenVersion = customer.tokenVersion;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -154,6 +179,22 @@ public class Customer implements UserDetails {
         this.profileImageId = profileImageId;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Integer tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
@@ -164,6 +205,8 @@ public class Customer implements UserDetails {
                 ", gender=" + gender +
                 ", password='" + password + '\'' +
                 ", profileImageId='" + profileImageId + '\'' +
+                ", version=" + version +
+                ", tokenVersion=" + tokenVersion +
                 '}';
     }
 
@@ -0,0 +1,11 @@
+package com.amigoscode.customer;
+
+import java.util.function.Consumer;
+
+public interface CustomerCacheInvalidationChannel {
+
+    // a null id asks listeners to drop everything, e.g. after missed messages
+    void publish(Integer customerId);
+
+    void subscribe(Consumer<Integer> listener);
+}
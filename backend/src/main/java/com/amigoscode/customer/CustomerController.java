@@ -1,26 +1,41 @@
 package com.amigoscode.customer;
 
-import com.amigoscode.jwt.JWTUtil;
+import com.amigoscode.auth.AuthenticationResponse;
+import com.amigoscode.auth.AuthenticationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("api/v1/customers")
 public class CustomerController {
+    static final Duration PROFILE_IMAGE_MAX_AGE = Duration.ofDays(365);
+
     private final CustomerService customerService;
-    private final JWTUtil jwtUtil;
+    private final AuthenticationService authenticationService;
+    private final boolean deferredProfileImageUpload;
 
     public CustomerController(
             CustomerService customerService,
-            JWTUtil jwtUtil
+            AuthenticationService authenticationService,
+            @Value("${customer.profile-image.upload.deferred:false}") boolean deferredProfileImageUpload
     ) {
         this.customerService = customerService;
-        this.jwtUtil = jwtUtil;
+        this.authenticationService = authenticationService;
+        this.deferredProfileImageUpload = deferredProfileImageUpload;
     }
 
     @GetMapping
@@ -28,19 +43,46 @@ public class CustomerController {
         return customerService.getAllCustomers();
     }
 
+    @GetMapping("page")
+    public CustomerPage getCustomersPage(
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "namePrefix", required = false) String namePrefix
+    ) {
+        return customerService.getCustomersPage(
+                new CustomerPageRequest(after, limit, gender, minAge, maxAge, namePrefix)
+        );
+    }
+
     @GetMapping("{customerId}")
     public CustomerDTO getCustomer(
             @PathVariable("customerId") Integer customerId) {
         return customerService.getCustomer(customerId);
     }
 
+    @PostMapping("lookup")
+    public CustomerLookupResult lookupCustomers(
+            @RequestBody CustomerLookupRequest lookupRequest
+    ) {
+        return customerService.getCustomersByIds(lookupRequest);
+    }
+
     @PostMapping
     public ResponseEntity<?> registerCustomer(@RequestBody CustomerRegistrationRequest request){
-        customerService.addCustomer(request);
-        String jwtToken = jwtUtil.issueToken(request.email(), "ROLE_USER");
+        AuthenticationResponse response = authenticationService.register(request);
         return ResponseEntity.ok()
-                .header(HttpHeaders.AUTHORIZATION, jwtToken)
-                .build();
+                .header(HttpHeaders.AUTHORIZATION, response.token())
+                .body(response);
+    }
+
+    @PostMapping("bulk")
+    public List<CustomerRegistrationResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests
+    ) {
+        return customerService.addCustomers(requests);
     }
 
     @DeleteMapping("{customerId}")
@@ -60,20 +102,65 @@ public class CustomerController {
             value = "{customerId}/profile-image",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
     )
-    public void uploadCustomerProfileImage(
+    public CompletableFuture<ResponseEntity<Void>> uploadCustomerProfileImage(
             @PathVariable("customerId") Integer customerId,
             @RequestParam("file") MultipartFile file
             ){
-        customerService.uploadCustomerProfileImage(customerId,file);
+        if (deferredProfileImageUpload) {
+            customerService.stageCustomerProfileImage(customerId,file);
+            return CompletableFuture.completedFuture(ResponseEntity.accepted().build());
+        }
+        return customerService.uploadCustomerProfileImage(customerId,file)
+                .thenApply(ignored -> ResponseEntity.ok().build());
     }
 
     @GetMapping(
             value = "{customerId}/profile-image",
             produces = MediaType.IMAGE_JPEG_VALUE
     )
-    public byte[] getCustomerProfileImage(
-            @PathVariable("customerId") Integer customerId
+    public ResponseEntity<InputStreamResource> getCustomerProfileImage(
+            @PathVariable("customerId") Integer customerId,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) String size,
+            WebRequest request
     ){
-        return customerService.getCustomerProfileImage(customerId);
+        ProfileImageSize imageSize = size == null ? null : ProfileImageSize.fromValue(size);
+        // the image behind a profileImageId never changes, a new upload gets a new id
+        String profileImageId = customerService.getCustomerProfileImageId(customerId);
+        String eTag = profileImageETag(profileImageId, imageSize);
+        CacheControl cacheControl = profileImageId.equals(version)
+                ? CacheControl.maxAge(PROFILE_IMAGE_MAX_AGE).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        CustomerProfileImage image = customerService.getCustomerProfileImage(
+                customerId,
+                profileImageId,
+                imageSize
+        );
+        if (image.size() != imageSize) {
+            // the resized image is not ready yet, do not let caches keep the original for it
+            eTag = profileImageETag(profileImageId, image.size());
+            cacheControl = CacheControl.noCache().cachePublic();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl);
+        if (image.contentLength() != null) {
+            response.contentLength(image.contentLength());
+        }
+        return response.body(new InputStreamResource(image.content()));
+    }
+
+    static String profileImageETag(String profileImageId, ProfileImageSize size) {
+        return size == null
+                ? "\"%s\"".formatted(profileImageId)
+                : "\"%s_%s\"".formatted(profileImageId, size.getValue());
     }
 }
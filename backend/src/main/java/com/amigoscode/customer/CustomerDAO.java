@@ -1,16 +1,37 @@
 package com.amigoscode.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface CustomerDAO {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomers(CustomerPageRequest pageRequest);
     Optional<Customer> selectCustomerById(Integer id);
+    List<Customer> selectCustomersByIds(Collection<Integer> ids);
     void insertCustomer(Customer customer);
+    List<String> insertCustomers(List<Customer> customers);
+    List<String> selectExistingEmails(Collection<String> emails);
     boolean existsCustomerWithEmail(String email);
     boolean existsCustomerWithId(Integer id);
     void deleteCustomerById(Integer id);
-    void updateCustomer(Customer update);
+    Optional<Customer> updateCustomer(Customer update);
     Optional<Customer> selectUserByEmail(String email);
     void updateCustomerProfileImage(String profileImageId, Integer customerId);
+
+    default void forEachCustomer(Consumer<Customer> action) {
+        int pageSize = 500;
+        int after = 0;
+        List<Customer> page;
+        do {
+            page = selectCustomers(
+                    new CustomerPageRequest(after, pageSize, null, null, null, null)
+            );
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageSize);
+    }
 }
@@ -0,0 +1,54 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class CustomerDAOCacheConfig {
+
+    @Bean("cached")
+    public CustomerDAO cachedCustomerDAO(
+            BeanFactory beanFactory,
+            @Value("${customer.cache.delegate:jdbc}") String delegate,
+            @Value("${customer.cache.maximum-size:10000}") long maximumSize,
+            @Value("${customer.cache.expire-after-write:10m}") Duration expireAfterWrite,
+            CustomerCacheInvalidationChannel invalidationChannel,
+            MeterRegistry meterRegistry
+    ) {
+        return new CachingCustomerDAO(
+                beanFactory.getBean(delegate, CustomerDAO.class),
+                invalidationChannel,
+                maximumSize,
+                expireAfterWrite,
+                meterRegistry
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(
+            name = "customer.cache.invalidation",
+            havingValue = "in-process",
+            matchIfMissing = true
+    )
+    public CustomerCacheInvalidationChannel inProcessCustomerCacheInvalidationChannel() {
+        return new InProcessCustomerCacheInvalidationChannel();
+    }
+
+    @Bean
+    @ConditionalOnProperty(
+            name = "customer.cache.invalidation",
+            havingValue = "postgres"
+    )
+    public CustomerCacheInvalidationChannel postgresCustomerCacheInvalidationChannel(
+            DataSource dataSource
+    ) {
+        return new PostgresCustomerCacheInvalidationChannel(dataSource);
+    }
+}
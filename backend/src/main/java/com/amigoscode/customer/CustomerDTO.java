@@ -10,5 +10,6 @@ public record CustomerDTO(
   Integer age,
   List<String> roles,
   String username,
-  String profileImageId
+  String profileImageId,
+  Integer version
 ) {}
@@ -0,0 +1,48 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+@Service
+public class CustomerExportService {
+
+    private final CustomerDAO customerDAO;
+    private final CustomerDTOMapper customerDTOMapper;
+    private final ObjectWriter customerWriter;
+
+    public CustomerExportService(
+            @Qualifier("jdbc") CustomerDAO customerDAO,
+            CustomerDTOMapper customerDTOMapper,
+            ObjectMapper objectMapper
+    ) {
+        this.customerDAO = customerDAO;
+        this.customerDTOMapper = customerDTOMapper;
+        this.customerWriter = objectMapper
+                .writerFor(CustomerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+    }
+
+    // every record ends with a newline, the last one too, so exports can be
+    // appended to each other and counted with wc -l
+    public void exportCustomers(OutputStream out) throws IOException {
+        try (JsonGenerator generator = customerWriter.createGenerator(out)) {
+            customerDAO.forEachCustomer(customer -> {
+                try {
+                    customerWriter.writeValue(generator, customerDTOMapper.apply(customer));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
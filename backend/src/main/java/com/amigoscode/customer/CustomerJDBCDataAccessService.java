@@ -1,14 +1,28 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDAO {
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
 
@@ -20,17 +34,76 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id,name,email,password,age,gender,profile_image_id
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
                 FROM customer
                 """;
 
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                WHERE id > ?
+                """);
+        List<Object> args = new ArrayList<>();
+        args.add(pageRequest.after());
+
+        if (pageRequest.gender() != null) {
+            sql.append("AND gender = ?\n");
+            args.add(pageRequest.gender().name());
+        }
+        if (pageRequest.minAge() != null) {
+            sql.append("AND age >= ?\n");
+            args.add(pageRequest.minAge());
+        }
+        if (pageRequest.maxAge() != null) {
+            sql.append("AND age <= ?\n");
+            args.add(pageRequest.maxAge());
+        }
+        if (pageRequest.namePrefix() != null) {
+            sql.append("AND name LIKE ? ESCAPE '\\'\n");
+            args.add(pageRequest.namePattern());
+        }
+        sql.append("""
+                ORDER BY id
+                LIMIT ?
+                """);
+        args.add(pageRequest.limit());
+
+        return jdbcTemplate.query(sql.toString(), customerRowMapper, args.toArray());
+    }
+
+    // postgres only honours the fetch size, and so uses a server side cursor
+    // instead of loading every row, when the statement runs inside a transaction
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCustomer(Consumer<Customer> action) {
+        var sql = """
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                ORDER BY id
+                """;
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement statement = con.prepareStatement(
+                            sql,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> action.accept(customerRowMapper.mapRow(rs, rs.getRow()))
+        );
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
-                SELECT id,name,email,password,age,gender,profile_image_id
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -38,45 +111,115 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
                 .stream().findFirst();
     }
 
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        var sql = """
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                WHERE id = ANY(?)
+                ORDER BY id
+                """;
+        return jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids.toArray())),
+                customerRowMapper
+        );
+    }
+
+    // one round trip: customer_email_unique decides whether the email is free
     @Override
     public void insertCustomer(Customer customer) {
         var sql = """
                 INSERT INTO customer(name,email,password,age,gender)
                 VALUES (?,?,?,?,?)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id
+                """;
+
+        Integer id = jdbcTemplate.query(
+                        sql,
+                        (rs, rowNum) -> rs.getInt("id"),
+                        customer.getName(),
+                        customer.getEmail(),
+                        customer.getPassword(),
+                        customer.getAge(),
+                        customer.getGender().name()
+                )
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new DuplicateKeyException(
+                        "customer with email [%s] already exists".formatted(customer.getEmail())
+                ));
+        customer.setId(id);
+    }
+
+    // one statement per chunk, rows whose email got taken since the caller
+    // checked are skipped and left out of the returned emails
+    @Override
+    @Transactional
+    public List<String> insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(name,email,password,age,gender)
+                SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::integer[], ?::text[])
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING email
                 """;
 
-        int update = jdbcTemplate.update(
+        List<String> inserted = new ArrayList<>(customers.size());
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> chunk = customers.subList(
+                    from,
+                    Math.min(from + INSERT_BATCH_SIZE, customers.size())
+            );
+            inserted.addAll(jdbcTemplate.query(
+                    sql,
+                    ps -> {
+                        Connection connection = ps.getConnection();
+                        ps.setArray(1, connection.createArrayOf("text", chunk.stream()
+                                .map(Customer::getName).toArray()));
+                        ps.setArray(2, connection.createArrayOf("text", chunk.stream()
+                                .map(Customer::getEmail).toArray()));
+                        ps.setArray(3, connection.createArrayOf("text", chunk.stream()
+                                .map(Customer::getPassword).toArray()));
+                        ps.setArray(4, connection.createArrayOf("integer", chunk.stream()
+                                .map(Customer::getAge).toArray()));
+                        ps.setArray(5, connection.createArrayOf("text", chunk.stream()
+                                .map(customer -> customer.getGender().name()).toArray()));
+                    },
+                    (rs, rowNum) -> rs.getString("email")
+            ));
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+        return jdbcTemplate.query(
                 sql,
-                customer.getName(),
-                customer.getEmail(),
-                customer.getPassword(),
-                customer.getAge(),
-                customer.getGender().name()
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")
         );
-
-        System.out.println("jdbcTemplate.update = " + update);
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
         var sql = """
-                SELECT count(id)
-                FROM customer
-                WHERE email = ?
+                SELECT EXISTS(SELECT 1 FROM customer WHERE email = ?)
                 """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
-        return count != null && count > 0;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, email));
     }
 
     @Override
     public boolean existsCustomerWithId(Integer id) {
         var sql = """
-                SELECT count(id)
-                FROM customer
-                WHERE id = ?
+                SELECT EXISTS(SELECT 1 FROM customer WHERE id = ?)
                 """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-        return count != null && count > 0;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
     }
 
     @Override
@@ -89,45 +232,92 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
         System.out.println("deleteCustomerById result = " + result);
     }
 
+    // one round trip: the row is only written when one of the given fields
+    // differs and the version still matches
     @Override
-    public void updateCustomer(Customer update) {
-        if(update.getName() != null){
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql,
-                    update.getName(),
-                    update.getId());
-            System.out.println("update customer name result = " + result);
+    public Optional<Customer> updateCustomer(Customer update) {
+        StringBuilder sql = new StringBuilder("UPDATE customer SET version = version + 1");
+        List<Object> args = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        List<Object> changeArgs = new ArrayList<>();
+
+        if (update.getName() != null) {
+            sql.append(", name = ?");
+            args.add(update.getName());
+            changes.add("name IS DISTINCT FROM ?");
+            changeArgs.add(update.getName());
+        }
+        if (update.getEmail() != null) {
+            sql.append(", email = ?, token_version = CASE WHEN email IS DISTINCT FROM ?"
+                    + " THEN token_version + 1 ELSE token_version END");
+            args.add(update.getEmail());
+            args.add(update.getEmail());
+            changes.add("email IS DISTINCT FROM ?");
+            changeArgs.add(update.getEmail());
+        }
+        if (update.getAge() != null) {
+            sql.append(", age = ?");
+            args.add(update.getAge());
+            changes.add("age IS DISTINCT FROM ?");
+            changeArgs.add(update.getAge());
+        }
+        if (update.getGender() != null) {
+            sql.append(", gender = ?");
+            args.add(update.getGender().name());
+            changes.add("gender IS DISTINCT FROM ?");
+            changeArgs.add(update.getGender().name());
+        }
+        if (update.getPassword() != null) {
+            sql.append(", password = ?");
+            args.add(update.getPassword());
+            changes.add("password IS DISTINCT FROM ?");
+            changeArgs.add(update.getPassword());
         }
 
-        if(update.getEmail() != null){
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql,
-                    update.getEmail(),
-                    update.getId());
-            System.out.println("update customer email result = " + result);
+        if (changes.isEmpty()) {
+            return unchanged(update);
         }
 
-        if(update.getAge() != null){
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql,
-                    update.getAge(),
-                    update.getId());
-            System.out.println("update customer age result = " + result);
+        sql.append(" WHERE id = ?");
+        args.add(update.getId());
+        if (update.getVersion() != null) {
+            sql.append(" AND version = ?");
+            args.add(update.getVersion());
         }
+        sql.append(" AND (").append(String.join(" OR ", changes)).append(")");
+        args.addAll(changeArgs);
+        sql.append(" RETURNING id,name,email,password,age,gender,profile_image_id,version,token_version");
+
+        Optional<Customer> updated = jdbcTemplate.query(sql.toString(), customerRowMapper, args.toArray())
+                .stream()
+                .findFirst();
+        return updated.isPresent() ? updated : unchanged(update);
+    }
 
-        if(update.getGender() != null){
-            String sql = "UPDATE customer SET gender = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql,
-                    update.getGender().name(),
-                    update.getId());
-            System.out.println("update customer gender result = " + result);
+    // only reached when nothing was written, tells a missing customer and a
+    // stale version apart from an update that changes nothing
+    private Optional<Customer> unchanged(Customer update) {
+        var sql = """
+                SELECT version FROM customer WHERE id = ?
+                """;
+        Integer version = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getInt("version"), update.getId())
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new EmptyResultDataAccessException(
+                        "customer with id [%s] not found".formatted(update.getId()), 1
+                ));
+        if (update.getVersion() != null && !update.getVersion().equals(version)) {
+            throw new OptimisticLockingFailureException(
+                    "customer with id [%s] was modified concurrently".formatted(update.getId())
+            );
         }
+        return Optional.empty();
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
         var sql = """
-                SELECT id,name,email,password,age,gender,profile_image_id
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
                 FROM customer
                 WHERE email = ?
                 """;
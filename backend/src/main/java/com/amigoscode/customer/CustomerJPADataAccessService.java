@@ -1,13 +1,24 @@
 package com.amigoscode.customer;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDAO{
 
+    private static final String EMAIL_CONSTRAINT = "customer_email_unique";
+
     private final CustomerRepository customerRepository;
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
@@ -19,14 +30,58 @@ public class CustomerJPADataAccessService implements CustomerDAO{
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        return customerRepository.findCustomersAfter(
+                pageRequest.after(),
+                pageRequest.gender(),
+                pageRequest.minAge(),
+                pageRequest.maxAge(),
+                pageRequest.namePattern(),
+                PageRequest.ofSize(pageRequest.limit())
+        );
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+        try {
+            customerRepository.save(customer);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e, "customer with email [%s] already exists".formatted(customer.getEmail()));
+        }
+    }
+
+    @Override
+    public List<String> insertCustomers(List<Customer> customers) {
+        Set<String> taken = new HashSet<>(customerRepository.findExistingEmails(
+                customers.stream().map(Customer::getEmail).toList()
+        ));
+        List<Customer> free = customers.stream()
+                .filter(customer -> !taken.contains(customer.getEmail()))
+                .toList();
+        try {
+            customerRepository.saveAll(free);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e, "one of %s customer emails already exists".formatted(free.size()));
+        }
+        return free.stream()
+                .map(Customer::getEmail)
+                .toList();
+    }
+
+    @Override
+    public List<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findExistingEmails(emails);
     }
 
     @Override
@@ -45,8 +100,47 @@ public class CustomerJPADataAccessService implements CustomerDAO{
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    public Optional<Customer> updateCustomer(Customer update) {
+        Customer customer = customerRepository.findById(update.getId())
+                .orElseThrow(() -> new EmptyResultDataAccessException(
+                        "customer with id [%s] not found".formatted(update.getId()), 1
+                ));
+        if (update.getVersion() != null && !update.getVersion().equals(customer.getVersion())) {
+            throw new OptimisticLockingFailureException(
+                    "customer with id [%s] was modified concurrently".formatted(update.getId())
+            );
+        }
+
+        boolean changes = false;
+        if (update.getName() != null && !update.getName().equals(customer.getName())) {
+            customer.setName(update.getName());
+            changes = true;
+        }
+        if (update.getEmail() != null && !update.getEmail().equals(customer.getEmail())) {
+            customer.setEmail(update.getEmail());
+            customer.setTokenVersion(customer.getTokenVersion() + 1);
+            changes = true;
+        }
+        if (update.getAge() != null && !update.getAge().equals(customer.getAge())) {
+            customer.setAge(update.getAge());
+            changes = true;
+        }
+        if (update.getGender() != null && update.getGender() != customer.getGender()) {
+            customer.setGender(update.getGender());
+            changes = true;
+        }
+        if (update.getPassword() != null && !update.getPassword().equals(customer.getPassword())) {
+            customer.setPassword(update.getPassword());
+            changes = true;
+        }
+        if (!changes) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(customerRepository.save(customer));
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e, "customer with email [%s] already exists".formatted(customer.getEmail()));
+        }
     }
 
     @Override
@@ -58,4 +152,14 @@ public class CustomerJPADataAccessService implements CustomerDAO{
     public void updateCustomerProfileImage(String profileImageId, Integer customerId) {
         customerRepository.updateProfileImageId(profileImageId,customerId);
     }
+
+    // hibernate reports unique violations as a plain DataIntegrityViolationException,
+    // narrow it to what the jdbc implementation throws for the same conflict
+    private static RuntimeException translate(DataIntegrityViolationException e, String message) {
+        if (e.getCause() instanceof ConstraintViolationException violation
+                && EMAIL_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+            return new DuplicateKeyException(message, e);
+        }
+        return e;
+    }
 }
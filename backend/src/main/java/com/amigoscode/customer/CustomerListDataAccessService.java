@@ -1,88 +1,274 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDAO{
-    //db
-    private static List<Customer> customers;
+    // customers are stored and handed out as copies, so callers can never
+    // mutate what the indexes point at
+    private final ConcurrentNavigableMap<Integer, Customer> customers = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
 
-    static{
-        customers= new ArrayList<>();
-        Customer alex = new Customer(
+    public CustomerListDataAccessService() {
+        insertCustomer(new Customer(
                 1,
                 "Alex",
                 "alex@gmail.com",
                 "password",
                 21,
                 Gender.MALE
-        );
-        Customer jamila = new Customer(
+        ));
+        insertCustomer(new Customer(
                 2,
                 "Jamila",
                 "jamila@gmail.com",
                 "password",
                 19,
                 Gender.FEMALE
-        );
-        customers.add(alex);
-        customers.add(jamila);
+        ));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customers.values()
+                .stream()
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        return customers.tailMap(pageRequest.after(), false)
+                .values()
+                .stream()
+                .filter(c -> pageRequest.gender() == null || c.getGender() == pageRequest.gender())
+                .filter(c -> pageRequest.minAge() == null || c.getAge() >= pageRequest.minAge())
+                .filter(c -> pageRequest.maxAge() == null || c.getAge() <= pageRequest.maxAge())
+                .filter(c -> pageRequest.namePrefix() == null || c.getName().startsWith(pageRequest.namePrefix()))
+                .limit(pageRequest.limit())
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-       return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(id)
+                .map(customers::get)
+                .map(CustomerListDataAccessService::copyOf);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        insert(customer);
+    }
+
+    @Override
+    public List<String> insertCustomers(List<Customer> customers) {
+        List<String> inserted = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            try {
+                insert(customer);
+                inserted.add(customer.getEmail());
+            } catch (DuplicateKeyException ignored) {
+                // skipped, like ON CONFLICT DO NOTHING in the jdbc implementation
+            }
+        }
+        return inserted;
+    }
+
+    private void insert(Customer customer) {
+        Integer id = customer.getId();
+        if (id == null) {
+            id = idSequence.incrementAndGet();
+        } else {
+            idSequence.accumulateAndGet(id, Math::max);
+        }
+
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            throw new DuplicateKeyException(
+                    "customer with email [%s] already exists".formatted(customer.getEmail())
+            );
+        }
+
+        Customer stored = copyOf(customer);
+        stored.setId(id);
+        if (stored.getVersion() == null) {
+            stored.setVersion(0);
+        }
+        if (stored.getTokenVersion() == null) {
+            stored.setTokenVersion(0);
+        }
+        if (customers.putIfAbsent(id, stored) != null) {
+            idsByEmail.remove(customer.getEmail(), id);
+            throw new DuplicateKeyException(
+                    "customer with id [%s] already exists".formatted(id)
+            );
+        }
+    }
+
+    @Override
+    public List<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(idsByEmail::containsKey)
+                .toList();
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return email != null && idsByEmail.containsKey(email);
     }
 
     @Override
     public boolean existsCustomerWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+        return id != null && customers.containsKey(id);
     }
 
     @Override
     public void deleteCustomerById(Integer id) {
-        customers.stream().filter(c -> c.getId().equals(id))
-                .findFirst()
-                .ifPresent(customers::remove);
+        Customer removed = customers.remove(id);
+        if (removed != null) {
+            idsByEmail.remove(removed.getEmail(), id);
+        }
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customers.add(update);
+    public Optional<Customer> updateCustomer(Customer update) {
+        Integer id = update.getId();
+        String email = update.getEmail();
+        boolean reservedEmail = false;
+        if (email != null) {
+            Integer owner = idsByEmail.putIfAbsent(email, id);
+            if (owner != null && !owner.equals(id)) {
+                throw new DuplicateKeyException(
+                        "customer with email [%s] already exists".formatted(email)
+                );
+            }
+            reservedEmail = owner == null;
+        }
+
+        String[] previousEmail = new String[1];
+        boolean[] changes = new boolean[1];
+        Customer updated;
+        try {
+            updated = customers.computeIfPresent(id, (key, existing) -> {
+                if (update.getVersion() != null
+                        && !update.getVersion().equals(existing.getVersion())) {
+                    throw modifiedConcurrently(id);
+                }
+                Customer customer = copyOf(existing);
+                if (update.getName() != null && !update.getName().equals(existing.getName())) {
+                    customer.setName(update.getName());
+                    changes[0] = true;
+                }
+                if (email != null && !email.equals(existing.getEmail())) {
+                    customer.setEmail(email);
+                    customer.setTokenVersion(existing.getTokenVersion() + 1);
+                    changes[0] = true;
+                }
+                if (update.getAge() != null && !update.getAge().equals(existing.getAge())) {
+                    customer.setAge(update.getAge());
+                    changes[0] = true;
+                }
+                if (update.getGender() != null && update.getGender() != existing.getGender()) {
+                    customer.setGender(update.getGender());
+                    changes[0] = true;
+                }
+                if (update.getPassword() != null && !update.getPassword().equals(existing.getPassword())) {
+                    customer.setPassword(update.getPassword());
+                    changes[0] = true;
+                }
+                if (!changes[0]) {
+                    return existing;
+                }
+                customer.setVersion(existing.getVersion() + 1);
+                previousEmail[0] = existing.getEmail();
+                return customer;
+            });
+            if (updated == null) {
+                throw new EmptyResultDataAccessException(
+                        "customer with id [%s] not found".formatted(id), 1
+                );
+            }
+        } catch (RuntimeException e) {
+            if (reservedEmail) {
+                idsByEmail.remove(email, id);
+            }
+            throw e;
+        }
+
+        if (!changes[0]) {
+            return Optional.empty();
+        }
+        if (!previousEmail[0].equals(updated.getEmail())) {
+            idsByEmail.remove(previousEmail[0], id);
+        }
+        return Optional.of(copyOf(updated));
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
-        return customers.stream()
-                .filter(c -> c.getUsername().equals(email))
-                .findFirst();
+        return Optional.ofNullable(email)
+                .map(idsByEmail::get)
+                .map(customers::get)
+                .map(CustomerListDataAccessService::copyOf);
     }
 
     @Override
     public void updateCustomerProfileImage(String profileImageId, Integer customerId) {
-        //TODO: implements this 😅
+        customers.computeIfPresent(customerId, (key, existing) -> {
+            Customer customer = copyOf(existing);
+            customer.setProfileImageId(profileImageId);
+            return customer;
+        });
+    }
+
+    private static OptimisticLockingFailureException modifiedConcurrently(Integer id) {
+        return new OptimisticLockingFailureException(
+                "customer with id [%s] was modified concurrently".formatted(id)
+        );
+    }
+
+    private static Customer copyOf(Customer customer) {
+        Customer copy = new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getPassword(),
+                customer.getAge(),
+                customer.getGender(),
+                customer.getProfileImageId()
+        );
+        copy.setVersion(customer.getVersion());
+        copy.setTokenVersion(customer.getTokenVersion());
+        return copy;
     }
 }
@@ -0,0 +1,7 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+public record CustomerLookupRequest(
+        List<Integer> ids
+) {}
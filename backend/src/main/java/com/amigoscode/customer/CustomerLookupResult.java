@@ -0,0 +1,8 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+public record CustomerLookupResult(
+        List<CustomerDTO> customers,
+        List<Integer> missingIds
+) {}
@@ -0,0 +1,20 @@
+package com.amigoscode.customer;
+
+public record CustomerPageRequest(
+        Integer after,
+        Integer limit,
+        Gender gender,
+        Integer minAge,
+        Integer maxAge,
+        String namePrefix
+) {
+    public String namePattern() {
+        if (namePrefix == null) {
+            return null;
+        }
+        return namePrefix
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+}
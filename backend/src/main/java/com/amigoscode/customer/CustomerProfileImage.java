@@ -0,0 +1,9 @@
+package com.amigoscode.customer;
+
+import java.io.InputStream;
+
+public record CustomerProfileImage(
+        InputStream content,
+        Long contentLength,
+        ProfileImageSize size
+) {}
@@ -0,0 +1,11 @@
+package com.amigoscode.customer;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+public record CustomerProfileImageContent(
+        Flux<ByteBuffer> content,
+        Long contentLength,
+        ProfileImageSize size
+) {}
@@ -0,0 +1,45 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+// boot's r2dbc auto-configuration is excluded, its transaction manager would
+// compete with the jpa one, so only reactive nodes get a connection factory
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerR2dbcConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(
+            @Value("${customer.reactive.r2dbc.url}") String url,
+            @Value("${customer.reactive.r2dbc.username:${spring.datasource.username}}") String username,
+            @Value("${customer.reactive.r2dbc.password:${spring.datasource.password}}") String password,
+            @Value("${customer.reactive.r2dbc.pool.max-size:10}") int maxSize
+    ) {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+                ConnectionFactoryOptions.parse(url)
+                        .mutate()
+                        .option(ConnectionFactoryOptions.USER, username)
+                        .option(ConnectionFactoryOptions.PASSWORD, password)
+                        .build()
+        );
+        return new ConnectionPool(
+                ConnectionPoolConfiguration.builder(connectionFactory)
+                        .maxSize(maxSize)
+                        .build()
+        );
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
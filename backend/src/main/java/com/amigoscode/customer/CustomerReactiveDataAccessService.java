@@ -0,0 +1,112 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// the read side of CustomerJDBCDataAccessService over r2dbc, for nodes
+// running the reactive stack
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerReactiveDataAccessService {
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerReactiveDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                ORDER BY id
+                """;
+        return databaseClient.sql(sql)
+                .map(CustomerReactiveDataAccessService::mapRow)
+                .all();
+    }
+
+    public Flux<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                WHERE id > :after
+                """);
+        if (pageRequest.gender() != null) {
+            sql.append("AND gender = :gender\n");
+        }
+        if (pageRequest.minAge() != null) {
+            sql.append("AND age >= :minAge\n");
+        }
+        if (pageRequest.maxAge() != null) {
+            sql.append("AND age <= :maxAge\n");
+        }
+        if (pageRequest.namePrefix() != null) {
+            sql.append("AND name LIKE :namePattern ESCAPE '\\'\n");
+        }
+        sql.append("""
+                ORDER BY id
+                LIMIT :limit
+                """);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .bind("after", pageRequest.after())
+                .bind("limit", pageRequest.limit());
+        if (pageRequest.gender() != null) {
+            spec = spec.bind("gender", pageRequest.gender().name());
+        }
+        if (pageRequest.minAge() != null) {
+            spec = spec.bind("minAge", pageRequest.minAge());
+        }
+        if (pageRequest.maxAge() != null) {
+            spec = spec.bind("maxAge", pageRequest.maxAge());
+        }
+        if (pageRequest.namePrefix() != null) {
+            spec = spec.bind("namePattern", pageRequest.namePattern());
+        }
+        return spec.map(CustomerReactiveDataAccessService::mapRow).all();
+    }
+
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerReactiveDataAccessService::mapRow)
+                .one();
+    }
+
+    public Mono<Customer> selectUserByEmail(String email) {
+        var sql = """
+                SELECT id,name,email,password,age,gender,profile_image_id,version,token_version
+                FROM customer
+                WHERE email = :email
+                """;
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(CustomerReactiveDataAccessService::mapRow)
+                .one();
+    }
+
+    static Customer mapRow(Readable row) {
+        Customer customer = new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("password", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("profile_image_id", String.class)
+        );
+        customer.setVersion(row.get("version", Integer.class));
+        customer.setTokenVersion(row.get("token_version", Integer.class));
+        return customer;
+    }
+}
@@ -0,0 +1,14 @@
+package com.amigoscode.customer;
+
+public record CustomerRegistrationResult(
+        int index,
+        String email,
+        Status status,
+        String message
+) {
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
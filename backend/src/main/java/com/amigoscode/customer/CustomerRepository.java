@@ -1,9 +1,13 @@
 package com.amigoscode.customer;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CustomerRepository
@@ -12,7 +16,24 @@ public interface CustomerRepository
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
     Optional<Customer> findCustomerByEmail(String email);
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
     @Modifying(clearAutomatically = true)
     @Query("UPDATE Customer c SET c.profileImageId = ?1 WHERE c.id = ?2")
     int updateProfileImageId(String profileImageId, Integer customerId);
+    @Query("""
+            SELECT c FROM Customer c
+            WHERE c.id > :after
+            AND (:gender IS NULL OR c.gender = :gender)
+            AND (:minAge IS NULL OR c.age >= :minAge)
+            AND (:maxAge IS NULL OR c.age <= :maxAge)
+            AND (:namePrefix IS NULL OR c.name LIKE :namePrefix ESCAPE '\\')
+            ORDER BY c.id
+            """)
+    List<Customer> findCustomersAfter(@Param("after") Integer after,
+                                      @Param("gender") Gender gender,
+                                      @Param("minAge") Integer minAge,
+                                      @Param("maxAge") Integer maxAge,
+                                      @Param("namePrefix") String namePrefix,
+                                      Pageable pageable);
 }
@@ -19,6 +19,8 @@ public class CustomerRowMapper implements RowMapper<Customer> {
                 Gender.valueOf(rs.getString("gender")),
                 rs.getString("profile_image_id")
         );
+        customer.setVersion(rs.getInt("version"));
+        customer.setTokenVersion(rs.getInt("token_version"));
         return customer;
     }
 }
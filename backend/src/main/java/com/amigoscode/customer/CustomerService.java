@@ -3,40 +3,77 @@ package com.amigoscode.customer;
 import com.amigoscode.exception.DuplicateResourceException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.StaleResourceException;
+import com.amigoscode.jwt.PrincipalCache;
 import com.amigoscode.s3.S3Buckets;
 import com.amigoscode.s3.S3Service;
+import com.amigoscode.security.BoundedPasswordEncoder;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class CustomerService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BULK_REGISTRATION_SIZE = 10_000;
+    private static final int MAX_LOOKUP_SIZE = 500;
+
     private final CustomerDAO customerDAO;
     private final CustomerDTOMapper customerDTOMapper;
-    private final PasswordEncoder passwordEncoder;
+    private final BoundedPasswordEncoder passwordEncoder;
     private final S3Service s3Service;
     private final S3Buckets s3Buckets;
+    private final PrincipalCache principalCache;
+    private final ProfileImageResizer profileImageResizer;
+    // only there with customer.profile-image.upload.deferred
+    private final Optional<ProfileImageUploadQueue> profileImageUploadQueue;
+    private final Executor applicationExecutor;
 
     public CustomerService(
-            @Qualifier("jdbc") CustomerDAO customerDAO,
+            @Qualifier("cached") CustomerDAO customerDAO,
             CustomerDTOMapper customerDTOMapper,
-            PasswordEncoder passwordEncoder,
+            BoundedPasswordEncoder passwordEncoder,
             S3Service s3Service,
-            S3Buckets s3Buckets
+            S3Buckets s3Buckets,
+            PrincipalCache principalCache,
+            ProfileImageResizer profileImageResizer,
+            Optional<ProfileImageUploadQueue> profileImageUploadQueue,
+            @Qualifier("applicationTaskExecutor") Executor applicationExecutor
     ) {
         this.customerDAO = customerDAO;
         this.passwordEncoder = passwordEncoder;
         this.customerDTOMapper = customerDTOMapper;
         this.s3Service = s3Service;
         this.s3Buckets = s3Buckets;
+        this.principalCache = principalCache;
+        this.profileImageResizer = profileImageResizer;
+        this.profileImageUploadQueue = profileImageUploadQueue;
+        this.applicationExecutor = applicationExecutor;
     }
 
     public List<CustomerDTO> getAllCustomers() {
@@ -46,6 +83,55 @@ public class CustomerService {
                 .collect(Collectors.toList());
     }
 
+    public CustomerPage getCustomersPage(CustomerPageRequest pageRequest) {
+        CustomerPageRequest pageQuery = pageQuery(pageRequest);
+        return toPage(customerDAO.selectCustomers(pageQuery), pageQuery, customerDTOMapper);
+    }
+
+    // validates the request and asks for one extra row, to know whether
+    // there is a next page
+    static CustomerPageRequest pageQuery(CustomerPageRequest pageRequest) {
+        int limit = pageRequest.limit() == null ? DEFAULT_PAGE_SIZE : pageRequest.limit();
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)
+            );
+        }
+        if (pageRequest.minAge() != null && pageRequest.maxAge() != null
+                && pageRequest.minAge() > pageRequest.maxAge()) {
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+
+        return new CustomerPageRequest(
+                pageRequest.after() == null ? 0 : pageRequest.after(),
+                limit + 1,
+                pageRequest.gender(),
+                pageRequest.minAge(),
+                pageRequest.maxAge(),
+                StringUtils.isBlank(pageRequest.namePrefix()) ? null : pageRequest.namePrefix()
+        );
+    }
+
+    static CustomerPage toPage(
+            List<Customer> customers,
+            CustomerPageRequest pageQuery,
+            Function<Customer, CustomerDTO> customerDTOMapper
+    ) {
+        int limit = pageQuery.limit() - 1;
+        Integer next = null;
+        if (customers.size() > limit) {
+            customers = customers.subList(0, limit);
+            next = customers.get(limit - 1).getId();
+        }
+
+        return new CustomerPage(
+                customers.stream()
+                        .map(customerDTOMapper)
+                        .collect(Collectors.toList()),
+                next
+        );
+    }
+
     public CustomerDTO getCustomer(Integer id) {
         return customerDAO.selectCustomerById(id)
                 .map(customerDTOMapper)
@@ -54,24 +140,154 @@ public class CustomerService {
                 ));
     }
 
+    public CustomerLookupResult getCustomersByIds(CustomerLookupRequest lookupRequest) {
+        if (lookupRequest == null || lookupRequest.ids() == null || lookupRequest.ids().isEmpty()) {
+            throw new RequestValidationException("ids must not be empty");
+        }
+        if (lookupRequest.ids().stream().anyMatch(Objects::isNull)) {
+            throw new RequestValidationException("ids must not contain null");
+        }
+        Set<Integer> ids = new LinkedHashSet<>(lookupRequest.ids());
+        if (ids.size() > MAX_LOOKUP_SIZE) {
+            throw new RequestValidationException(
+                    "cannot look up more than %s customers at once".formatted(MAX_LOOKUP_SIZE)
+            );
+        }
+
+        Map<Integer, CustomerDTO> found = customerDAO.selectCustomersByIds(ids)
+                .stream()
+                .map(customerDTOMapper)
+                .collect(Collectors.toMap(CustomerDTO::id, Function.identity()));
+
+        // keep the order the ids were asked in
+        List<CustomerDTO> customers = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : ids) {
+            CustomerDTO customer = found.get(id);
+            if (customer == null) {
+                missingIds.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerLookupResult(customers, missingIds);
+    }
+
     public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        if (customerDAO.existsCustomerWithEmail(customerRegistrationRequest.email())) {
+        String email = customerRegistrationRequest.email();
+        // no existence check up front, customer_email_unique rejects a taken
+        // email in the same statement that inserts the customer
+        try {
+            customerDAO.insertCustomer(
+                    new Customer(
+                            customerRegistrationRequest.name(),
+                            email,
+                            passwordEncoder.encode(customerRegistrationRequest.password()),
+                            customerRegistrationRequest.age(),
+                            customerRegistrationRequest.gender()
+                    )
+            );
+        } catch (DuplicateKeyException e) {
             throw new DuplicateResourceException("email already taken");
         }
-        customerDAO.insertCustomer(
-                new Customer(
-                        customerRegistrationRequest.name(),
-                        customerRegistrationRequest.email(),
-                        passwordEncoder.encode(customerRegistrationRequest.password()),
-                        customerRegistrationRequest.age(),
-                        customerRegistrationRequest.gender()
-                )
-        );
+    }
+
+    public List<CustomerRegistrationResult> addCustomers(
+            List<CustomerRegistrationRequest> registrationRequests
+    ) {
+        if (registrationRequests.size() > MAX_BULK_REGISTRATION_SIZE) {
+            throw new RequestValidationException(
+                    "at most %s customers can be registered at once"
+                            .formatted(MAX_BULK_REGISTRATION_SIZE)
+            );
+        }
+
+        Set<String> emails = registrationRequests.stream()
+                .filter(CustomerService::isValidRegistration)
+                .map(CustomerRegistrationRequest::email)
+                .collect(Collectors.toSet());
+        Set<String> takenEmails = emails.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(customerDAO.selectExistingEmails(emails));
+
+        List<CustomerRegistrationResult> results = new ArrayList<>(registrationRequests.size());
+        List<CustomerRegistrationRequest> accepted = new ArrayList<>();
+        for (int i = 0; i < registrationRequests.size(); i++) {
+            CustomerRegistrationRequest request = registrationRequests.get(i);
+            if (!isValidRegistration(request)) {
+                results.add(new CustomerRegistrationResult(
+                        i, request == null ? null : request.email(),
+                        CustomerRegistrationResult.Status.INVALID,
+                        "name, email, password, age and gender are required"
+                ));
+            } else if (!takenEmails.add(request.email())) {
+                results.add(new CustomerRegistrationResult(
+                        i, request.email(), CustomerRegistrationResult.Status.DUPLICATE,
+                        "email already taken"
+                ));
+            } else {
+                accepted.add(request);
+                results.add(new CustomerRegistrationResult(
+                        i, request.email(), CustomerRegistrationResult.Status.CREATED, null
+                ));
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            // hashing dominates the cost of a bulk registration, it runs on
+            // the encoder's bulk pool so logins keep their threads
+            List<String> passwordHashes = passwordEncoder.encodeAll(accepted.stream()
+                    .map(CustomerRegistrationRequest::password)
+                    .toList());
+            List<Customer> customers = new ArrayList<>(accepted.size());
+            for (int i = 0; i < accepted.size(); i++) {
+                CustomerRegistrationRequest request = accepted.get(i);
+                customers.add(new Customer(
+                        request.name(),
+                        request.email(),
+                        passwordHashes.get(i),
+                        request.age(),
+                        request.gender()
+                ));
+            }
+            Set<String> inserted;
+            try {
+                inserted = new HashSet<>(customerDAO.insertCustomers(customers));
+            } catch (DuplicateKeyException e) {
+                throw new DuplicateResourceException("email already taken");
+            }
+            // rows left out were taken by another registration since we checked
+            for (int i = 0; i < results.size(); i++) {
+                CustomerRegistrationResult result = results.get(i);
+                if (result.status() == CustomerRegistrationResult.Status.CREATED
+                        && !inserted.contains(result.email())) {
+                    results.set(i, new CustomerRegistrationResult(
+                            result.index(), result.email(),
+                            CustomerRegistrationResult.Status.DUPLICATE,
+                            "email already taken"
+                    ));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static boolean isValidRegistration(CustomerRegistrationRequest request) {
+        return request != null
+                && StringUtils.isNotBlank(request.name())
+                && StringUtils.isNotBlank(request.email())
+                && StringUtils.isNotBlank(request.password())
+                && request.age() != null
+                && request.gender() != null;
     }
 
     public void deleteCustomerById(Integer id) {
-        checkIfCustomerExist(id);
+        Customer customer = customerDAO.selectCustomerById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)
+                ));
         customerDAO.deleteCustomerById(id);
+        principalCache.invalidate(customer.getUsername());
     }
 
     private void checkIfCustomerExist(Integer id) {
@@ -84,65 +300,78 @@ public class CustomerService {
 
 
     public void updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest) {
-        Customer customer = customerDAO.selectCustomerById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "customer with id [%s] not found".formatted(customerId)
-                ));
-
-        boolean changes = false;
-
-        if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changes = true;
-        }
-
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changes = true;
-        }
-
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            if (customerDAO.existsCustomerWithEmail(updateRequest.email())) {
-                throw new DuplicateResourceException("email already taken");
-            }
-            customer.setEmail(updateRequest.email());
-            changes = true;
-        }
+        // no read up front, the database compares the given fields and the
+        // version the client sent in the same statement that writes them
+        Customer update = new Customer();
+        update.setId(customerId);
+        update.setVersion(updateRequest.version());
+        update.setName(updateRequest.name());
+        update.setEmail(updateRequest.email());
+        update.setAge(updateRequest.age());
+        update.setGender(updateRequest.gender());
 
-        if (updateRequest.gender() != null && !updateRequest.gender().equals(customer.getGender())) {
-            customer.setGender(updateRequest.gender());
-            changes = true;
+        Customer updated;
+        try {
+            updated = customerDAO.updateCustomer(update)
+                    .orElseThrow(() -> new RequestValidationException("no data changes found"));
+        } catch (EmptyResultDataAccessException e) {
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
+        } catch (OptimisticLockingFailureException e) {
+            throw new StaleResourceException(
+                    "customer with id [%s] was modified concurrently".formatted(customerId)
+            );
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException("email already taken");
         }
-
-        if (!changes) {
-            throw new RequestValidationException("no data changes found");
+        if (update.getEmail() != null) {
+            // the principal is cached under the previous email
+            principalCache.invalidateIf(principal ->
+                    principal instanceof Customer customer && customerId.equals(customer.getId()));
         }
-
-        customerDAO.updateCustomer(customer);
+        principalCache.invalidate(updated.getUsername());
     }
 
-    public void uploadCustomerProfileImage(
+    // the upload does not hold the request thread while S3 is busy, the
+    // customer is pointed at the new image once S3 has it
+    public CompletableFuture<Void> uploadCustomerProfileImage(
             Integer customerId,
             MultipartFile file
     ) {
         checkIfCustomerExist(customerId);
         String profileImageId = UUID.randomUUID().toString();
+        InputStream content;
         try {
-            s3Service.putObejct(
-                    s3Buckets.getCustomer(),
-                    "profile-images/%s/%s".formatted(
-                            customerId,
-                            profileImageId
-                    ),
-                    file.getBytes()
-            );
+            content = file.getInputStream();
         } catch (IOException e) {
             throw new RuntimeException("failed to upload profile image",e);
         }
-        customerDAO.updateCustomerProfileImage(profileImageId,customerId);
+        // the follow-up blocks on jdbc, it must not run on an S3 client thread
+        return s3Service.putObjectAsync(
+                s3Buckets.getCustomer(),
+                profileImageKey(customerId, profileImageId),
+                content,
+                file.getSize()
+        ).thenRunAsync(() -> {
+            customerDAO.updateCustomerProfileImage(profileImageId,customerId);
+            profileImageResizer.resizeAsync(customerId, profileImageId);
+        }, applicationExecutor);
     }
 
-    public byte[] getCustomerProfileImage(Integer customerId) {
+    // returns once the image is staged on local disk, it shows up on the
+    // customer after the upload queue has pushed it to S3
+    public void stageCustomerProfileImage(
+            Integer customerId,
+            MultipartFile file
+    ) {
+        checkIfCustomerExist(customerId);
+        profileImageUploadQueue
+                .orElseThrow(() -> new IllegalStateException("deferred profile image uploads are disabled"))
+                .enqueue(customerId, UUID.randomUUID().toString(), file);
+    }
+
+    public String getCustomerProfileImageId(Integer customerId) {
         CustomerDTO customer = customerDAO.selectCustomerById(customerId)
                 .map(customerDTOMapper)
                 .orElseThrow(() -> new ResourceNotFoundException(
@@ -154,13 +383,45 @@ public class CustomerService {
                     "customer with id [%s] profile image not found".formatted(customerId)
             );
         }
+        return customer.profileImageId();
+    }
 
-        return s3Service.getObject(
-                s3Buckets.getCustomer(),
-                "profile-images/%s/%s".formatted(
-                        customerId,
-                        customer.profileImageId()
-                )
-        );
+    public CustomerProfileImage getCustomerProfileImage(
+            Integer customerId,
+            String profileImageId,
+            ProfileImageSize size
+    ) {
+        if (size != null) {
+            try {
+                ResponseInputStream<GetObjectResponse> image = s3Service.getObjectStream(
+                        s3Buckets.getCustomer(),
+                        profileImageKey(customerId, profileImageId, size)
+                );
+                return new CustomerProfileImage(image, image.response().contentLength(), size);
+            } catch (NoSuchKeyException e) {
+                // not resized yet, serve the original instead
+            }
+        }
+
+        ResponseInputStream<GetObjectResponse> image;
+        try {
+            image = s3Service.getObjectStream(
+                    s3Buckets.getCustomer(),
+                    profileImageKey(customerId, profileImageId)
+            );
+        } catch (NoSuchKeyException e) {
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] profile image not found".formatted(customerId)
+            );
+        }
+        return new CustomerProfileImage(image, image.response().contentLength(), null);
+    }
+
+    static String profileImageKey(Integer customerId, String profileImageId) {
+        return "profile-images/%s/%s".formatted(customerId, profileImageId);
+    }
+
+    static String profileImageKey(Integer customerId, String profileImageId, ProfileImageSize size) {
+        return "profile-images/%s/%s_%s".formatted(customerId, profileImageId, size.getValue());
     }
 }
@@ -4,5 +4,8 @@ public record CustomerUpdateRequest(
         String name,
         String email,
         Integer age,
-        Gender gender
+        Gender gender,
+        // the version the client last read, the update is rejected with 409
+        // if the customer changed since; without it the last write wins
+        Integer version
 ) {}
@@ -1,18 +1,25 @@
 package com.amigoscode.customer;
 
+import com.amigoscode.jwt.PrincipalCache;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class CustomerUserDetailsService implements UserDetailsService {
+public class CustomerUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final CustomerDAO customerDAO;
+    private final PrincipalCache principalCache;
 
-    public CustomerUserDetailsService(@Qualifier("jpa") CustomerDAO customerDAO) {
+    public CustomerUserDetailsService(
+            @Qualifier("cached") CustomerDAO customerDAO,
+            PrincipalCache principalCache
+    ) {
         this.customerDAO = customerDAO;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -23,4 +30,21 @@ public class CustomerUserDetailsService implements UserDetailsService {
                 );
     }
 
+    // called after a successful login when the stored hash uses an outdated
+    // encoder or cost, only the password column is written. The write goes
+    // through the cache so no node keeps serving the old hash and version.
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Customer customer = customerDAO.selectUserByEmail(user.getUsername())
+                .orElseThrow(
+                        () -> new UsernameNotFoundException("Username "+user.getUsername()+" not found")
+                );
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setPassword(newPassword);
+        Customer updated = customerDAO.updateCustomer(update).orElse(customer);
+        principalCache.invalidate(user.getUsername());
+        return updated;
+    }
+
 }
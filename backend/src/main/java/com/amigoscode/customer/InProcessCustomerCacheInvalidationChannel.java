@@ -0,0 +1,20 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class InProcessCustomerCacheInvalidationChannel implements CustomerCacheInvalidationChannel {
+
+    private final List<Consumer<Integer>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Integer customerId) {
+        listeners.forEach(listener -> listener.accept(customerId));
+    }
+
+    @Override
+    public void subscribe(Consumer<Integer> listener) {
+        listeners.add(listener);
+    }
+}
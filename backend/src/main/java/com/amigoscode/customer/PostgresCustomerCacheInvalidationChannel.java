@@ -0,0 +1,117 @@
+package com.amigoscode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// LISTEN/NOTIFY needs the driver's own notification API, which is reached
+// reflectively so the driver can stay a runtime dependency
+public class PostgresCustomerCacheInvalidationChannel
+        implements CustomerCacheInvalidationChannel, DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PostgresCustomerCacheInvalidationChannel.class);
+    private static final String CHANNEL = "customer_cache_invalidation";
+    private static final String INVALIDATE_ALL = "*";
+    private static final int POLL_TIMEOUT_MILLIS = 1_000;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Class<?> pgConnection;
+    private final Method getNotifications;
+    private final Method getParameter;
+    private final List<Consumer<Integer>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+
+    public PostgresCustomerCacheInvalidationChannel(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            this.pgConnection = Class.forName("org.postgresql.PGConnection");
+            this.getNotifications = pgConnection.getMethod("getNotifications", int.class);
+            this.getParameter = Class.forName("org.postgresql.PGNotification").getMethod("getParameter");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("the postgres channel needs the postgresql driver", e);
+        }
+        this.listenerThread = new Thread(this::listen, "customer-cache-invalidation");
+        this.listenerThread.setDaemon(true);
+        this.listenerThread.start();
+    }
+
+    @Override
+    public void publish(Integer customerId) {
+        jdbcTemplate.queryForList(
+                "SELECT pg_notify(?, ?)",
+                CHANNEL,
+                customerId == null ? INVALIDATE_ALL : customerId.toString()
+        );
+    }
+
+    @Override
+    public void subscribe(Consumer<Integer> listener) {
+        listeners.add(listener);
+    }
+
+    private void listen() {
+        while (running) {
+            // holds one pooled connection for as long as the channel is up
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // anything published while we were not listening is lost
+                notifyListeners(null);
+
+                Object listening = connection.unwrap(pgConnection);
+                while (running) {
+                    Object[] notifications = (Object[]) getNotifications.invoke(listening, POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (Object notification : notifications) {
+                        String parameter = (String) getParameter.invoke(notification);
+                        notifyListeners(INVALIDATE_ALL.equals(parameter)
+                                ? null
+                                : Integer.valueOf(parameter));
+                    }
+                }
+            } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                LOGGER.warn("customer cache invalidation listener failed, reconnecting in {}",
+                        RECONNECT_DELAY, e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void notifyListeners(Integer customerId) {
+        listeners.forEach(listener -> listener.accept(customerId));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        listenerThread.interrupt();
+        listenerThread.join(POLL_TIMEOUT_MILLIS * 2L);
+    }
+}
@@ -0,0 +1,226 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Deletes the profile images no customer points at any more: the previous
+// image after every upload, and all images of a deleted customer. S3 is
+// listed a page at a time, the owners of a page are looked up in one query
+// and orphans go out in DeleteObjects batches, paced so the job does not
+// compete with live traffic.
+@Component
+public class ProfileImageGarbageCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileImageGarbageCollector.class);
+    private static final String PREFIX = "profile-images/";
+    // the most keys S3 takes in one DeleteObjects call
+    private static final int MAX_DELETE_BATCH = 1000;
+
+    private final S3Service s3Service;
+    private final S3Buckets s3Buckets;
+    private final CustomerDAO customerDAO;
+    private final boolean enabled;
+    private final boolean dryRun;
+    // uploads reach S3 before the customer points at them, anything younger
+    // than this may still be on its way to being referenced
+    private final Duration minAge;
+    private final int batchSize;
+    private final long requestIntervalNanos;
+    private final Counter deletedImages;
+    private long nextRequestAt = System.nanoTime();
+
+    public ProfileImageGarbageCollector(
+            S3Service s3Service,
+            S3Buckets s3Buckets,
+            @Qualifier("jdbc") CustomerDAO customerDAO,
+            @Value("${customer.profile-image.gc.enabled:true}") boolean enabled,
+            @Value("${customer.profile-image.gc.dry-run:true}") boolean dryRun,
+            @Value("${customer.profile-image.gc.min-age:24h}") Duration minAge,
+            @Value("${customer.profile-image.gc.batch-size:1000}") int batchSize,
+            @Value("${customer.profile-image.gc.max-requests-per-second:10}") int maxRequestsPerSecond,
+            MeterRegistry meterRegistry
+    ) {
+        this.s3Service = s3Service;
+        this.s3Buckets = s3Buckets;
+        this.customerDAO = customerDAO;
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.minAge = minAge;
+        this.batchSize = Math.min(batchSize, MAX_DELETE_BATCH);
+        this.requestIntervalNanos = maxRequestsPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond
+                : 0;
+        this.deletedImages = Counter.builder("profile.image.gc.deleted")
+                .description("orphaned profile images deleted from S3")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${customer.profile-image.gc.initial-delay:PT10M}",
+            fixedDelayString = "${customer.profile-image.gc.interval:PT6H}"
+    )
+    public void collectGarbage() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            collect();
+        } catch (RuntimeException e) {
+            // the next run starts over from the first page
+            LOGGER.warn("profile image garbage collection failed", e);
+        }
+    }
+
+    Result collect() {
+        Instant cutoff = Instant.now().minus(minAge);
+        String bucket = s3Buckets.getCustomer();
+        int scanned = 0;
+        List<String> orphans = new ArrayList<>();
+        int orphaned = 0;
+        int deleted = 0;
+
+        String continuationToken = null;
+        do {
+            pace();
+            ListObjectsV2Response page = s3Service.listObjects(
+                    bucket,
+                    PREFIX,
+                    continuationToken,
+                    batchSize
+            );
+            scanned += page.contents().size();
+            List<String> pageOrphans = orphans(page.contents(), cutoff);
+            orphaned += pageOrphans.size();
+            orphans.addAll(pageOrphans);
+            while (orphans.size() >= MAX_DELETE_BATCH) {
+                List<String> batch = orphans.subList(0, MAX_DELETE_BATCH);
+                deleted += delete(bucket, batch);
+                batch.clear();
+            }
+            continuationToken = Boolean.TRUE.equals(page.isTruncated())
+                    ? page.nextContinuationToken()
+                    : null;
+        } while (continuationToken != null);
+        if (!orphans.isEmpty()) {
+            deleted += delete(bucket, orphans);
+        }
+
+        LOGGER.info("profile image garbage collection scanned {} objects, found {} orphans, deleted {}{}",
+                scanned, orphaned, deleted, dryRun ? " (dry run)" : "");
+        return new Result(scanned, orphaned, deleted);
+    }
+
+    private List<String> orphans(List<S3Object> objects, Instant cutoff) {
+        Map<String, ProfileImage> candidates = new HashMap<>();
+        for (S3Object object : objects) {
+            if (object.lastModified() == null || !object.lastModified().isBefore(cutoff)) {
+                continue;
+            }
+            ProfileImage profileImage = ProfileImage.fromKey(object.key());
+            if (profileImage != null) {
+                candidates.put(object.key(), profileImage);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, String> currentProfileImageIds = new HashMap<>();
+        customerDAO.selectCustomersByIds(candidates.values()
+                        .stream()
+                        .map(ProfileImage::customerId)
+                        .distinct()
+                        .toList())
+                .forEach(customer -> currentProfileImageIds.put(
+                        customer.getId(),
+                        customer.getProfileImageId()
+                ));
+
+        // a missing customer and a customer without an image both map to null
+        return candidates.entrySet()
+                .stream()
+                .filter(candidate -> !Objects.equals(
+                        currentProfileImageIds.get(candidate.getValue().customerId()),
+                        candidate.getValue().profileImageId()
+                ))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    private int delete(String bucket, List<String> keys) {
+        if (dryRun) {
+            LOGGER.info("dry run, would delete {} orphaned profile images starting with [{}]",
+                    keys.size(), keys.get(0));
+            return 0;
+        }
+        pace();
+        List<String> failed = s3Service.deleteObjects(bucket, List.copyOf(keys));
+        if (!failed.isEmpty()) {
+            LOGGER.warn("failed to delete {} orphaned profile images, e.g. [{}]",
+                    failed.size(), failed.get(0));
+        }
+        int deleted = keys.size() - failed.size();
+        deletedImages.increment(deleted);
+        return deleted;
+    }
+
+    private void pace() {
+        if (requestIntervalNanos == 0) {
+            return;
+        }
+        long wait = nextRequestAt - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while collecting profile images", e);
+            }
+        }
+        nextRequestAt = Math.max(nextRequestAt, System.nanoTime()) + requestIntervalNanos;
+    }
+
+    record Result(int scanned, int orphaned, int deleted) {}
+
+    // profile-images/{customerId}/{profileImageId}, resized copies carry a
+    // _{size} suffix and belong to the same profile image
+    private record ProfileImage(Integer customerId, String profileImageId) {
+        static ProfileImage fromKey(String key) {
+            String[] parts = key.substring(PREFIX.length()).split("/");
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                return null;
+            }
+            Integer customerId;
+            try {
+                customerId = Integer.valueOf(parts[0]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            int sizeSeparator = parts[1].indexOf('_');
+            return new ProfileImage(
+                    customerId,
+                    sizeSeparator < 0 ? parts[1] : parts[1].substring(0, sizeSeparator)
+            );
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+@Component
+public class ProfileImageResizer implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileImageResizer.class);
+    private static final int LARGEST_SIZE = Arrays.stream(ProfileImageSize.values())
+            .mapToInt(ProfileImageSize::getPixels)
+            .max()
+            .orElseThrow();
+
+    private final S3Service s3Service;
+    private final S3Buckets s3Buckets;
+    private final ThreadPoolTaskExecutor executor;
+    // a small, highly compressed file can still decode to gigabytes of
+    // pixels, the header is checked against this before anything is decoded
+    private final long maxPixels;
+
+    public ProfileImageResizer(
+            S3Service s3Service,
+            S3Buckets s3Buckets,
+            @Value("${customer.profile-image.resizer.threads:2}") int threads,
+            @Value("${customer.profile-image.resizer.queue-capacity:100}") int queueCapacity,
+            @Value("${customer.profile-image.resizer.max-pixels:40000000}") long maxPixels,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        this.s3Service = s3Service;
+        this.s3Buckets = s3Buckets;
+        this.maxPixels = maxPixels;
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(threads);
+        this.executor.setMaxPoolSize(threads);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("profile-image-resizer-");
+        if (virtualThreads) {
+            // mostly waiting on S3, the pool size still bounds the concurrency
+            this.executor.setThreadFactory(
+                    Thread.ofVirtual().name("profile-image-resizer-", 1).factory()
+            );
+        }
+        this.executor.initialize();
+    }
+
+    public void resizeAsync(Integer customerId, String profileImageId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    resize(customerId, profileImageId);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("failed to resize profile image [{}] of customer with id [{}]",
+                            profileImageId, customerId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // downloads fall back to the original until a new upload succeeds
+            LOGGER.warn("resizer queue is full, skipping profile image [{}] of customer with id [{}]",
+                    profileImageId, customerId);
+        }
+    }
+
+    void resize(Integer customerId, String profileImageId) {
+        BufferedImage original;
+        try (InputStream content = s3Service.getObjectStreamUncached(
+                s3Buckets.getCustomer(),
+                CustomerService.profileImageKey(customerId, profileImageId)
+        )) {
+            original = read(content, customerId, profileImageId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (original == null) {
+            return;
+        }
+
+        for (ProfileImageSize size : ProfileImageSize.values()) {
+            s3Service.putObejct(
+                    s3Buckets.getCustomer(),
+                    CustomerService.profileImageKey(customerId, profileImageId, size),
+                    toJpeg(scale(original, size.getPixels()))
+            );
+        }
+    }
+
+    private BufferedImage read(InputStream content, Integer customerId, String profileImageId)
+            throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input == null
+                    ? Collections.emptyIterator()
+                    : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                LOGGER.warn("profile image [{}] of customer with id [{}] is not a readable image",
+                        profileImageId, customerId);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    LOGGER.warn("profile image [{}] of customer with id [{}] is {}x{}, more than {} pixels",
+                            profileImageId, customerId, width, height, maxPixels);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = subsampling(width, height);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // decodes only every n-th pixel of large originals, keeping at least twice
+    // the largest size so the final scale still has pixels to smooth over
+    static int subsampling(int width, int height) {
+        return Math.max(1, Math.max(width, height) / (2 * LARGEST_SIZE));
+    }
+
+    static BufferedImage scale(BufferedImage original, int pixels) {
+        double ratio = Math.min(
+                1.0,
+                (double) pixels / Math.max(original.getWidth(), original.getHeight())
+        );
+        int width = Math.max(1, (int) Math.round(original.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(
+                    RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR
+            );
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] toJpeg(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+public enum ProfileImageSize {
+    SMALL(64),
+    MEDIUM(256),
+    LARGE(512);
+
+    private final int pixels;
+
+    ProfileImageSize(int pixels) {
+        this.pixels = pixels;
+    }
+
+    public int getPixels() {
+        return pixels;
+    }
+
+    public String getValue() {
+        return name().toLowerCase();
+    }
+
+    public static ProfileImageSize fromValue(String value) {
+        return Arrays.stream(values())
+                .filter(size -> size.getValue().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new RequestValidationException(
+                        "size must be one of [%s]".formatted(
+                                Arrays.stream(values())
+                                        .map(ProfileImageSize::getValue)
+                                        .collect(Collectors.joining(", "))
+                        )
+                ));
+    }
+}
@@ -0,0 +1,276 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.TooManyRequestsException;
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+// Write-behind for profile images: uploads are staged on local disk and
+// pushed to S3 in the background, the customer is pointed at the image only
+// once S3 has it. Staged files are picked up again after a restart.
+@Component
+@ConditionalOnProperty(name = "customer.profile-image.upload.deferred", havingValue = "true")
+public class ProfileImageUploadQueue implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileImageUploadQueue.class);
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final String FAILED_DIRECTORY = "failed";
+
+    private final S3Service s3Service;
+    private final S3Buckets s3Buckets;
+    private final CustomerDAO customerDAO;
+    private final ProfileImageResizer profileImageResizer;
+    private final Path stagingDirectory;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final Counter failedUploads;
+    // staged file -> when it was staged
+    private final ConcurrentMap<Path, Instant> pending = new ConcurrentHashMap<>();
+    // only the latest upload of a customer may flip profile_image_id, an
+    // older one finishing late must not win
+    private final ConcurrentMap<Integer, String> latestProfileImageIds = new ConcurrentHashMap<>();
+
+    public ProfileImageUploadQueue(
+            S3Service s3Service,
+            S3Buckets s3Buckets,
+            @Qualifier("cached") CustomerDAO customerDAO,
+            ProfileImageResizer profileImageResizer,
+            @Value("${customer.profile-image.upload.staging-directory:${user.home}/.frasini/profile-image-uploads}") Path stagingDirectory,
+            @Value("${customer.profile-image.upload.threads:2}") int threads,
+            @Value("${customer.profile-image.upload.max-pending:1000}") int maxPending,
+            @Value("${customer.profile-image.upload.max-attempts:10}") int maxAttempts,
+            @Value("${customer.profile-image.upload.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${customer.profile-image.upload.max-backoff:5m}") Duration maxBackoff,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.s3Service = s3Service;
+        this.s3Buckets = s3Buckets;
+        this.customerDAO = customerDAO;
+        this.profileImageResizer = profileImageResizer;
+        this.stagingDirectory = stagingDirectory;
+        this.maxPending = maxPending;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        try {
+            Files.createDirectories(stagingDirectory.resolve(FAILED_DIRECTORY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(threads);
+        this.scheduler.setThreadNamePrefix("profile-image-upload-");
+        if (virtualThreads) {
+            this.scheduler.setThreadFactory(
+                    Thread.ofVirtual().name("profile-image-upload-", 1).factory()
+            );
+        }
+        this.scheduler.initialize();
+
+        Gauge.builder("profile.image.uploads.pending", pending, ConcurrentMap::size)
+                .description("Profile images staged on disk and not yet in S3")
+                .register(meterRegistry);
+        Gauge.builder("profile.image.uploads.oldest.age", this, queue -> queue.oldestPendingAge().toMillis() / 1000.0)
+                .description("Seconds the oldest staged profile image has been waiting")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.failedUploads = Counter.builder("profile.image.uploads.failed")
+                .description("Staged profile images given up on after the last attempt")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingUploads() {
+        List<Path> staged;
+        try (Stream<Path> files = Files.list(stagingDirectory)) {
+            staged = files.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        staged.stream()
+                .filter(file -> file.getFileName().toString().endsWith(PARTIAL_SUFFIX))
+                .forEach(ProfileImageUploadQueue::deleteQuietly);
+        // oldest first, so the latest staged image of a customer wins
+        staged.stream()
+                .filter(file -> !file.getFileName().toString().endsWith(PARTIAL_SUFFIX))
+                .sorted(Comparator.comparing(ProfileImageUploadQueue::lastModified))
+                .forEach(file -> {
+                    StagedUpload upload = StagedUpload.of(file);
+                    if (upload == null) {
+                        LOGGER.warn("ignoring unexpected file [{}] in the profile image staging directory", file);
+                        return;
+                    }
+                    pending.put(file, lastModified(file));
+                    latestProfileImageIds.put(upload.customerId(), upload.profileImageId());
+                    schedule(upload, 1, Duration.ZERO);
+                });
+        if (!pending.isEmpty()) {
+            LOGGER.info("resuming [{}] staged profile image uploads", pending.size());
+        }
+    }
+
+    public void enqueue(Integer customerId, String profileImageId, MultipartFile file) {
+        if (pending.size() >= maxPending) {
+            throw new TooManyRequestsException("too many profile image uploads pending, try again later");
+        }
+
+        StagedUpload upload = new StagedUpload(
+                stagingDirectory.resolve("%s_%s".formatted(customerId, profileImageId)),
+                customerId,
+                profileImageId
+        );
+        // streamed aside and moved into place, the upload never sits in the
+        // heap and a crash never leaves a truncated file that looks staged
+        Path partial = upload.file().resolveSibling(upload.file().getFileName() + PARTIAL_SUFFIX);
+        try {
+            file.transferTo(partial);
+            Files.move(partial, upload.file(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new UncheckedIOException("failed to stage profile image", e);
+        }
+        pending.put(upload.file(), Instant.now());
+        latestProfileImageIds.put(customerId, profileImageId);
+        schedule(upload, 1, Duration.ZERO);
+    }
+
+    public int pendingUploads() {
+        return pending.size();
+    }
+
+    Duration oldestPendingAge() {
+        return pending.values()
+                .stream()
+                .min(Comparator.naturalOrder())
+                .map(stagedAt -> Duration.between(stagedAt, Instant.now()))
+                .orElse(Duration.ZERO);
+    }
+
+    private void schedule(StagedUpload upload, int attempt, Duration delay) {
+        scheduler.schedule(
+                () -> upload(upload, attempt),
+                Instant.now().plus(delay)
+        );
+    }
+
+    void upload(StagedUpload upload, int attempt) {
+        try {
+            try (InputStream content = Files.newInputStream(upload.file())) {
+                s3Service.putObject(
+                        s3Buckets.getCustomer(),
+                        CustomerService.profileImageKey(upload.customerId(), upload.profileImageId()),
+                        content,
+                        Files.size(upload.file())
+                );
+            }
+            if (upload.profileImageId().equals(latestProfileImageIds.get(upload.customerId()))) {
+                customerDAO.updateCustomerProfileImage(upload.profileImageId(), upload.customerId());
+                profileImageResizer.resizeAsync(upload.customerId(), upload.profileImageId());
+                latestProfileImageIds.remove(upload.customerId(), upload.profileImageId());
+            }
+        } catch (IOException | RuntimeException e) {
+            retryOrGiveUp(upload, attempt, e);
+            return;
+        }
+        deleteQuietly(upload.file());
+        pending.remove(upload.file());
+    }
+
+    private void retryOrGiveUp(StagedUpload upload, int attempt, Exception e) {
+        if (attempt < maxAttempts) {
+            Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+            if (backoff.compareTo(maxBackoff) > 0) {
+                backoff = maxBackoff;
+            }
+            LOGGER.warn("failed to upload profile image [{}] of customer with id [{}], attempt [{}], retrying in [{}]",
+                    upload.profileImageId(), upload.customerId(), attempt, backoff, e);
+            schedule(upload, attempt + 1, backoff);
+            return;
+        }
+
+        // kept aside for someone to look at, not retried on restart
+        LOGGER.error("giving up on profile image [{}] of customer with id [{}] after [{}] attempts",
+                upload.profileImageId(), upload.customerId(), attempt, e);
+        failedUploads.increment();
+        try {
+            Files.move(
+                    upload.file(),
+                    stagingDirectory.resolve(FAILED_DIRECTORY).resolve(upload.file().getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING
+            );
+        } catch (IOException moveFailure) {
+            LOGGER.warn("failed to move [{}] aside", upload.file(), moveFailure);
+        }
+        latestProfileImageIds.remove(upload.customerId(), upload.profileImageId());
+        pending.remove(upload.file());
+    }
+
+    private static Instant lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.now();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("failed to delete [{}]", file, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // whatever is still staged is picked up by the next start
+        scheduler.shutdown();
+    }
+
+    record StagedUpload(Path file, Integer customerId, String profileImageId) {
+        static StagedUpload of(Path file) {
+            String[] parts = file.getFileName().toString().split("_", 2);
+            if (parts.length != 2) {
+                return null;
+            }
+            try {
+                return new StagedUpload(file, Integer.valueOf(parts[0]), parts[1]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+
+import static com.amigoscode.customer.CustomerController.PROFILE_IMAGE_MAX_AGE;
+import static com.amigoscode.customer.CustomerController.profileImageETag;
+
+// serves the read endpoints of CustomerController on nodes started with
+// spring.main.web-application-type=reactive, writes stay on servlet nodes
+@RestController
+@RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    @GetMapping
+    public Flux<CustomerDTO> getCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping("page")
+    public Mono<CustomerPage> getCustomersPage(
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "namePrefix", required = false) String namePrefix
+    ) {
+        return customerService.getCustomersPage(
+                new CustomerPageRequest(after, limit, gender, minAge, maxAge, namePrefix)
+        );
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<CustomerDTO> getCustomer(
+            @PathVariable("customerId") Integer customerId) {
+        return customerService.getCustomer(customerId);
+    }
+
+    @GetMapping(
+            value = "{customerId}/profile-image",
+            produces = MediaType.IMAGE_JPEG_VALUE
+    )
+    public Mono<ResponseEntity<Flux<ByteBuffer>>> getCustomerProfileImage(
+            @PathVariable("customerId") Integer customerId,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) String size,
+            ServerWebExchange exchange
+    ) {
+        ProfileImageSize imageSize = size == null ? null : ProfileImageSize.fromValue(size);
+        return customerService.getCustomerProfileImageId(customerId)
+                .flatMap(profileImageId -> {
+                    String eTag = profileImageETag(profileImageId, imageSize);
+                    CacheControl cacheControl = profileImageId.equals(version)
+                            ? CacheControl.maxAge(PROFILE_IMAGE_MAX_AGE).cachePublic().immutable()
+                            : CacheControl.noCache().cachePublic();
+
+                    if (exchange.checkNotModified(eTag)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(eTag)
+                                .cacheControl(cacheControl)
+                                .<Flux<ByteBuffer>>build());
+                    }
+
+                    return customerService.getCustomerProfileImage(
+                                    customerId,
+                                    profileImageId,
+                                    imageSize
+                            )
+                            .map(image -> {
+                                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                                if (image.size() != imageSize) {
+                                    // the resized image is not ready yet, do not let caches keep the original for it
+                                    response.eTag(profileImageETag(profileImageId, image.size()))
+                                            .cacheControl(CacheControl.noCache().cachePublic());
+                                } else {
+                                    response.eTag(eTag).cacheControl(cacheControl);
+                                }
+                                if (image.contentLength() != null) {
+                                    response.contentLength(image.contentLength());
+                                }
+                                return response.body(image.content());
+                            });
+                });
+    }
+}
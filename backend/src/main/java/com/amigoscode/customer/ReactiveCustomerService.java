@@ -0,0 +1,109 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.s3.ReactiveS3Service;
+import com.amigoscode.s3.S3Buckets;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import static com.amigoscode.customer.CustomerService.profileImageKey;
+
+// the read endpoints of CustomerService without a blocking call, so a node
+// running the reactive stack serves them from a few event loop threads
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+
+    private final CustomerReactiveDataAccessService customerDAO;
+    private final CustomerDTOMapper customerDTOMapper;
+    private final ReactiveS3Service s3Service;
+    private final S3Buckets s3Buckets;
+
+    public ReactiveCustomerService(
+            CustomerReactiveDataAccessService customerDAO,
+            CustomerDTOMapper customerDTOMapper,
+            ReactiveS3Service s3Service,
+            S3Buckets s3Buckets
+    ) {
+        this.customerDAO = customerDAO;
+        this.customerDTOMapper = customerDTOMapper;
+        this.s3Service = s3Service;
+        this.s3Buckets = s3Buckets;
+    }
+
+    public Flux<CustomerDTO> getAllCustomers() {
+        return customerDAO.selectAllCustomers()
+                .map(customerDTOMapper);
+    }
+
+    public Mono<CustomerPage> getCustomersPage(CustomerPageRequest pageRequest) {
+        return Mono.fromCallable(() -> CustomerService.pageQuery(pageRequest))
+                .flatMap(pageQuery -> customerDAO.selectCustomers(pageQuery)
+                        .collectList()
+                        .map(customers -> CustomerService.toPage(
+                                customers,
+                                pageQuery,
+                                customerDTOMapper
+                        )));
+    }
+
+    public Mono<CustomerDTO> getCustomer(Integer id) {
+        return customerDAO.selectCustomerById(id)
+                .map(customerDTOMapper)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)
+                )));
+    }
+
+    public Mono<String> getCustomerProfileImageId(Integer customerId) {
+        return getCustomer(customerId)
+                .mapNotNull(CustomerDTO::profileImageId)
+                .filter(StringUtils::isNotBlank)
+                .switchIfEmpty(Mono.error(() -> profileImageNotFound(customerId)));
+    }
+
+    public Mono<CustomerProfileImageContent> getCustomerProfileImage(
+            Integer customerId,
+            String profileImageId,
+            ProfileImageSize size
+    ) {
+        Mono<CustomerProfileImageContent> original = Mono.defer(() -> s3Service.getObject(
+                        s3Buckets.getCustomer(),
+                        profileImageKey(customerId, profileImageId)
+                ))
+                .map(image -> new CustomerProfileImageContent(
+                        image.content(),
+                        image.contentLength(),
+                        null
+                ))
+                .onErrorMap(
+                        NoSuchKeyException.class,
+                        e -> profileImageNotFound(customerId)
+                );
+        if (size == null) {
+            return original;
+        }
+
+        return s3Service.getObject(
+                        s3Buckets.getCustomer(),
+                        profileImageKey(customerId, profileImageId, size)
+                )
+                .map(image -> new CustomerProfileImageContent(
+                        image.content(),
+                        image.contentLength(),
+                        size
+                ))
+                // not resized yet, serve the original instead
+                .onErrorResume(NoSuchKeyException.class, e -> original);
+    }
+
+    private static ResourceNotFoundException profileImageNotFound(Integer customerId) {
+        return new ResourceNotFoundException(
+                "customer with id [%s] profile image not found".formatted(customerId)
+        );
+    }
+}
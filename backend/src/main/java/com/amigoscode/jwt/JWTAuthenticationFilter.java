@@ -1,12 +1,18 @@
 package com.amigoscode.jwt;
 
-import com.amigoscode.customer.CustomerUserDetailsService;
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerDAO;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,19 +22,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Objects;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
     private final JWTUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final RevokedSessions revokedSessions;
+    private final CustomerDAO customerDAO;
+    private final boolean stateless;
 
     public JWTAuthenticationFilter(
             JWTUtil jwtUtil,
-            UserDetailsService userDetailsService
+            UserDetailsService userDetailsService,
+            PrincipalCache principalCache,
+            RevokedSessions revokedSessions,
+            @Qualifier("cached") CustomerDAO customerDAO,
+            @Value("${jwt.authentication.stateless:false}") boolean stateless
     ) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.revokedSessions = revokedSessions;
+        this.customerDAO = customerDAO;
+        this.stateless = stateless;
     }
 
     @Override
@@ -45,18 +65,30 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String jwt = authHeader.substring(7);
-        String subject = jwtUtil.getSubject(jwt);
+        JWTClaims claims;
+        try {
+            claims = jwtUtil.parseToken(jwt);
+        } catch (JwtException e) {
+            // expired or invalid tokens are treated as no token, clients
+            // get the usual 403 and can use their refresh token
+            filterChain.doFilter(request,response);
+            return;
+        }
+        if(revokedSessions.isRevoked(claims.sessionId())){
+            filterChain.doFilter(request,response);
+            return;
+        }
+        String subject = claims.subject();
 
         if(subject != null &&
                 SecurityContextHolder
                         .getContext()
                         .getAuthentication() == null){
-            UserDetails userDetails = userDetailsService.loadUserByUsername(subject);
-            if(jwtUtil.isTokenValid(jwt, userDetails.getUsername())){
-                UsernamePasswordAuthenticationToken authenticationToken =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails,null,userDetails.getAuthorities()
-                        );
+            UsernamePasswordAuthenticationToken authenticationToken =
+                    stateless && claims.customerId() != null && claims.tokenVersion() != null
+                            ? authenticateFromClaims(claims)
+                            : authenticateFromUserDetails(claims);
+            if(authenticationToken != null){
                 authenticationToken.setDetails(
                         new WebAuthenticationDetailsSource().buildDetails(request)
                 );
@@ -66,4 +98,42 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request,response);
     }
 
+    // the signature already vouches for subject and scopes, the only lookup
+    // is the token version, served from the customer cache
+    private UsernamePasswordAuthenticationToken authenticateFromClaims(JWTClaims claims) {
+        Integer tokenVersion = customerDAO.selectCustomerById(claims.customerId())
+                .map(Customer::getTokenVersion)
+                .orElse(null);
+        if(!Objects.equals(tokenVersion, claims.tokenVersion())){
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                claims.subject(),
+                null,
+                claims.scopes()
+                        .stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .toList()
+        );
+    }
+
+    private UsernamePasswordAuthenticationToken authenticateFromUserDetails(JWTClaims claims) {
+        String subject = claims.subject();
+        UserDetails userDetails = principalCache.get(
+                subject,
+                userDetailsService::loadUserByUsername
+        );
+        if(!subject.equals(userDetails.getUsername())){
+            return null;
+        }
+        if(claims.tokenVersion() != null
+                && userDetails instanceof Customer customer
+                && !Objects.equals(customer.getTokenVersion(), claims.tokenVersion())){
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                userDetails,null,userDetails.getAuthorities()
+        );
+    }
+
 }
@@ -0,0 +1,13 @@
+package com.amigoscode.jwt;
+
+import java.time.Instant;
+import java.util.List;
+
+public record JWTClaims(
+        String subject,
+        List<String> scopes,
+        Instant expiresAt,
+        String sessionId,
+        Integer customerId,
+        Integer tokenVersion
+) {}
@@ -1,24 +1,81 @@
 package com.amigoscode.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 
-import static java.time.temporal.ChronoUnit.*;
-
 @Service
 public class JWTUtil {
 
     private static final String SECRET_KEY =
             "foobar_123456789_foobar_123456789_foobar_123456789_foobar_123456789";
+    private static final long VERIFIED_TOKENS_MAXIMUM_SIZE = 10_000;
+    private static final Duration DEFAULT_ACCESS_TOKEN_TTL = Duration.ofMinutes(15);
+    private static final String SESSION_ID_CLAIM = "sid";
+    private static final String CUSTOMER_ID_CLAIM = "cid";
+    private static final String TOKEN_VERSION_CLAIM = "ver";
+
+    private final Duration accessTokenTtl;
+
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts
+            .parserBuilder()
+            .setSigningKey(signingKey)
+            .build();
+
+    // keyed by the token digest so raw bearer tokens are not kept around,
+    // each entry lives until the token it stands for expires
+    private final Cache<String, JWTClaims> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_TOKENS_MAXIMUM_SIZE)
+            .expireAfter(new Expiry<String, JWTClaims>() {
+                @Override
+                public long expireAfterCreate(String key, JWTClaims claims, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, JWTClaims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, JWTClaims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public JWTUtil() {
+        this(DEFAULT_ACCESS_TOKEN_TTL);
+    }
+
+    @Autowired
+    public JWTUtil(@Value("${jwt.access-token.ttl:15m}") Duration accessTokenTtl) {
+        this.accessTokenTtl = accessTokenTtl;
+    }
+
+    public Duration getAccessTokenTtl() {
+        return accessTokenTtl;
+    }
 
     public String issueToken(String subject){
         return issueToken(subject,Map.of());
@@ -32,6 +89,24 @@ public class JWTUtil {
         return issueToken(subject,Map.of("scopes",scopes));
     }
 
+    // the session id ties an access token to its refresh token family,
+    // so revoking the family also rejects the access tokens issued from it;
+    // customer id and token version let the filter authenticate from the
+    // claims alone
+    public String issueToken(
+            String subject,
+            Integer customerId,
+            Integer tokenVersion,
+            String sessionId,
+            List<String> scopes
+    ){
+        return issueToken(subject,Map.of(
+                "scopes",scopes,
+                SESSION_ID_CLAIM,sessionId,
+                CUSTOMER_ID_CLAIM,customerId,
+                TOKEN_VERSION_CLAIM,tokenVersion
+        ));
+    }
 
     public String issueToken(
             String subject,
@@ -42,39 +117,69 @@ public class JWTUtil {
                 .setSubject(subject)
                 .setIssuer("https://frasini.com")
                 .setIssuedAt(Date.from(Instant.now()))
-                .setExpiration(Date.from(Instant.now().plus(15, DAYS)))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setExpiration(Date.from(Instant.now().plus(accessTokenTtl)))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public String getSubject(String token){
-        return getClaims(token).getSubject();
+        return parseToken(token).subject();
+    }
+
+    public JWTClaims parseToken(String token) {
+        String digest = digest(token);
+        JWTClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return cached;
+        }
+
+        JWTClaims claims = verify(token);
+        verifiedTokens.put(digest, claims);
+        return claims;
+    }
+
+    // parses and checks the signature without going through verifiedTokens
+    JWTClaims verify(String token) {
+        return toJWTClaims(getClaims(token));
     }
 
     private Claims getClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return parser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
-    private Key getSigningKey(){
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private static JWTClaims toJWTClaims(Claims claims) {
+        List<?> scopes = claims.get("scopes", List.class);
+        return new JWTClaims(
+                claims.getSubject(),
+                scopes == null
+                        ? List.of()
+                        : scopes.stream().map(String::valueOf).toList(),
+                claims.getExpiration().toInstant(),
+                claims.get(SESSION_ID_CLAIM, String.class),
+                claims.get(CUSTOMER_ID_CLAIM, Integer.class),
+                claims.get(TOKEN_VERSION_CLAIM, Integer.class)
+        );
+    }
+
+    private static String digest(String token) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(token.getBytes(StandardCharsets.UTF_8))
+            );
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public boolean isTokenValid(
             String jwt,
             String username
     ) {
-        String subject = getSubject(jwt);
-        return subject.equals(username) && !isTokenExpired(jwt);
-    }
-
-    private boolean isTokenExpired(String jwt) {
-        return getClaims(jwt)
-                .getExpiration()
-                .before(Date.from(Instant.now()));
+        JWTClaims claims = parseToken(jwt);
+        return claims.subject().equals(username)
+                && claims.expiresAt().isAfter(Instant.now());
     }
 }
@@ -0,0 +1,94 @@
+package com.amigoscode.jwt;
+
+import com.amigoscode.customer.CustomerReactiveDataAccessService;
+import io.jsonwebtoken.JwtException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Objects;
+
+// the reactive counterpart of JWTAuthenticationFilter, the customer is
+// looked up over r2dbc so the event loop never blocks on jdbc. not a bean,
+// a WebFilter bean would also run outside the security chain
+public class ReactiveJWTAuthenticationFilter implements WebFilter {
+
+    private final JWTUtil jwtUtil;
+    private final RevokedSessions revokedSessions;
+    private final CustomerReactiveDataAccessService customerDAO;
+
+    public ReactiveJWTAuthenticationFilter(
+            JWTUtil jwtUtil,
+            RevokedSessions revokedSessions,
+            CustomerReactiveDataAccessService customerDAO
+    ) {
+        this.jwtUtil = jwtUtil;
+        this.revokedSessions = revokedSessions;
+        this.customerDAO = customerDAO;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(
+            @NonNull ServerWebExchange exchange,
+            @NonNull WebFilterChain chain
+    ) {
+        String authHeader = exchange.getRequest()
+                .getHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION);
+
+        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+            return chain.filter(exchange);
+        }
+
+        JWTClaims claims;
+        try {
+            claims = jwtUtil.parseToken(authHeader.substring(7));
+        } catch (JwtException e) {
+            return chain.filter(exchange);
+        }
+        if(claims.subject() == null || revokedSessions.isRevoked(claims.sessionId())){
+            return chain.filter(exchange);
+        }
+
+        Mono<UsernamePasswordAuthenticationToken> authentication =
+                claims.customerId() != null && claims.tokenVersion() != null
+                        ? authenticateFromClaims(claims)
+                        : authenticateFromCustomer(claims);
+        return authentication
+                .map(ReactiveSecurityContextHolder::withAuthentication)
+                .defaultIfEmpty(Context.empty())
+                .flatMap(context -> chain.filter(exchange).contextWrite(context));
+    }
+
+    private Mono<UsernamePasswordAuthenticationToken> authenticateFromClaims(JWTClaims claims) {
+        return customerDAO.selectCustomerById(claims.customerId())
+                .filter(customer -> Objects.equals(customer.getTokenVersion(), claims.tokenVersion()))
+                .map(customer -> new UsernamePasswordAuthenticationToken(
+                        claims.subject(),
+                        null,
+                        claims.scopes()
+                                .stream()
+                                .map(SimpleGrantedAuthority::new)
+                                .toList()
+                ));
+    }
+
+    // a token that carries a version still has to match it, like on the
+    // claims path, so an email change revokes it here too
+    private Mono<UsernamePasswordAuthenticationToken> authenticateFromCustomer(JWTClaims claims) {
+        return customerDAO.selectUserByEmail(claims.subject())
+                .filter(customer -> claims.tokenVersion() == null
+                        || Objects.equals(customer.getTokenVersion(), claims.tokenVersion()))
+                .map(customer -> new UsernamePasswordAuthenticationToken(
+                        customer,null,customer.getAuthorities()
+                ));
+    }
+}
@@ -0,0 +1,34 @@
+package com.amigoscode.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Session ids whose access tokens must no longer be accepted. An entry only
+ * has to outlive the access tokens it stands for, so it expires after the
+ * access token ttl and the set stays small.
+ */
+@Component
+public class RevokedSessions {
+
+    private final Cache<String, Boolean> sessionIds;
+
+    public RevokedSessions(JWTUtil jwtUtil, MeterRegistry meterRegistry) {
+        this.sessionIds = Caffeine.newBuilder()
+                .expireAfterWrite(jwtUtil.getAccessTokenTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sessionIds, "revoked-sessions");
+    }
+
+    public void revoke(String sessionId) {
+        sessionIds.put(sessionId, Boolean.TRUE);
+    }
+
+    public boolean isRevoked(String sessionId) {
+        return sessionId != null && sessionIds.getIfPresent(sessionId) != null;
+    }
+}
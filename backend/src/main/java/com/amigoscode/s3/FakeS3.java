@@ -1,7 +1,6 @@
 package com.amigoscode.s3;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
@@ -9,12 +8,67 @@ import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
-import java.io.*;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+// A local stand-in for S3 with the semantics the app relies on: atomic
+// writes, MD5 ETags, NoSuchKeyException on missing keys and paginated
+// listings, plus optional latency and bandwidth to behave like the real
+// thing under load.
 public class FakeS3 implements S3Client {
 
-    private static final String PATH
-            = System.getProperty("user.home") + "/.frasini/s3";
+    private static final Path PATH
+            = Path.of(System.getProperty("user.home"), ".frasini", "s3");
+    // bucket names cannot start with a dot, so this never clashes with one
+    private static final String TEMP_DIRECTORY = ".tmp";
+    private static final int MAX_KEYS = 1000;
+
+    private final Path root;
+    // added to every call, to see how the app behaves against a slow S3
+    private final Duration latency;
+    // per transfer, 0 for no cap
+    private final long bytesPerSecond;
+    // computing an MD5 on every head or list would make the fake slower
+    // than the thing it stands in for
+    private final ConcurrentMap<Path, StoredETag> eTags = new ConcurrentHashMap<>();
+
+    public FakeS3() {
+        this(PATH, Duration.ZERO);
+    }
+
+    public FakeS3(Path root, Duration latency) {
+        this(root, latency, 0);
+    }
+
+    public FakeS3(Path root, Duration latency, long bytesPerSecond) {
+        this.root = root;
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+    }
 
     @Override
     public String serviceName() {
@@ -30,21 +84,41 @@ public class FakeS3 implements S3Client {
             PutObjectRequest putObjectRequest,
             RequestBody requestBody
     ) throws AwsServiceException, SdkClientException {
-        InputStream inputStream = requestBody.contentStreamProvider().newStream();
+        simulateLatency();
+        Path object = buildObjectFullPath(
+                putObjectRequest.bucket(),
+                putObjectRequest.key()
+        );
+        // written aside and renamed into place, readers never see half an object
+        Path temp = root.resolve(TEMP_DIRECTORY).resolve(UUID.randomUUID().toString());
+        MessageDigest md5 = md5();
         try {
-            byte[] bytes = IOUtils.toByteArray(inputStream);
-            FileUtils.writeByteArrayToFile(
-                    new File(
-                       buildObjectFullPath(
-                               putObjectRequest.bucket(),
-                               putObjectRequest.key()
-                       )
-                    ),
-                    bytes
-            );
-            return PutObjectResponse.builder().build();
+            Files.createDirectories(temp.getParent());
+            try (InputStream content = new DigestInputStream(
+                    throttle(requestBody.contentStreamProvider().newStream()),
+                    md5
+            )) {
+                Files.copy(content, temp);
+            }
+            byte[] digest = md5.digest();
+            if (putObjectRequest.contentMD5() != null
+                    && !putObjectRequest.contentMD5().equals(Base64.getEncoder().encodeToString(digest))) {
+                throw s3Exception(400, "BadDigest",
+                        "The Content-MD5 you specified did not match what we received.");
+            }
+            Files.createDirectories(object.getParent());
+            Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            String eTag = "\"%s\"".formatted(HexFormat.of().formatHex(digest));
+            BasicFileAttributes attributes = Files.readAttributes(object, BasicFileAttributes.class);
+            eTags.put(object, new StoredETag(eTag, attributes.size(), attributes.lastModifiedTime()));
+            return PutObjectResponse.builder()
+                    .eTag(eTag)
+                    .build();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(temp);
         }
     }
 
@@ -52,23 +126,288 @@ public class FakeS3 implements S3Client {
     public ResponseInputStream<GetObjectResponse> getObject(
             GetObjectRequest getObjectRequest
     ) throws AwsServiceException, SdkClientException {
+        simulateLatency();
+        Path object = buildObjectFullPath(
+                getObjectRequest.bucket(),
+                getObjectRequest.key()
+        );
         try {
-            FileInputStream fileInputStream = new FileInputStream(
-                    buildObjectFullPath(
-                            getObjectRequest.bucket(),
-                            getObjectRequest.key()
-                    )
+            BasicFileAttributes attributes = Files.readAttributes(object, BasicFileAttributes.class);
+            return new ResponseInputStream<>(
+                    GetObjectResponse.builder()
+                            .contentLength(attributes.size())
+                            .eTag(eTag(object, attributes))
+                            .lastModified(attributes.lastModifiedTime().toInstant())
+                            .build(),
+                    throttle(Files.newInputStream(object))
             );
-            return  new ResponseInputStream<>(
-                    GetObjectResponse.builder().build(),
-                    fileInputStream
-            );
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+        } catch (NoSuchFileException e) {
+            throw noSuchKey(getObjectRequest.key());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public HeadObjectResponse headObject(
+            HeadObjectRequest headObjectRequest
+    ) throws AwsServiceException, SdkClientException {
+        simulateLatency();
+        Path object = buildObjectFullPath(
+                headObjectRequest.bucket(),
+                headObjectRequest.key()
+        );
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(object, BasicFileAttributes.class);
+            return HeadObjectResponse.builder()
+                    .contentLength(attributes.size())
+                    .eTag(eTag(object, attributes))
+                    .lastModified(attributes.lastModifiedTime().toInstant())
+                    .build();
+        } catch (NoSuchFileException e) {
+            throw noSuchKey(headObjectRequest.key());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // like S3, deleting a key that does not exist succeeds
+    @Override
+    public DeleteObjectResponse deleteObject(
+            DeleteObjectRequest deleteObjectRequest
+    ) throws AwsServiceException, SdkClientException {
+        simulateLatency();
+        delete(buildObjectFullPath(
+                deleteObjectRequest.bucket(),
+                deleteObjectRequest.key()
+        ));
+        return DeleteObjectResponse.builder().build();
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(
+            DeleteObjectsRequest deleteObjectsRequest
+    ) throws AwsServiceException, SdkClientException {
+        simulateLatency();
+        List<ObjectIdentifier> objects = deleteObjectsRequest.delete().objects();
+        if (objects.size() > MAX_KEYS) {
+            throw s3Exception(400, "MalformedXML",
+                    "A delete request can have at most %s keys.".formatted(MAX_KEYS));
+        }
+        for (ObjectIdentifier object : objects) {
+            delete(buildObjectFullPath(deleteObjectsRequest.bucket(), object.key()));
+        }
+        // quiet mode only reports errors, and a local delete does not fail per key
+        return DeleteObjectsResponse.builder()
+                .deleted(Boolean.TRUE.equals(deleteObjectsRequest.delete().quiet())
+                        ? List.of()
+                        : objects.stream()
+                                .map(object -> DeletedObject.builder().key(object.key()).build())
+                                .toList())
+                .build();
+    }
+
+    // keys come back in lexicographic order, the continuation token is the
+    // last key of the previous page
+    @Override
+    public ListObjectsV2Response listObjectsV2(
+            ListObjectsV2Request listObjectsV2Request
+    ) throws AwsServiceException, SdkClientException {
+        simulateLatency();
+        Path bucket = root.resolve(listObjectsV2Request.bucket());
+        if (!Files.isDirectory(bucket)) {
+            throw NoSuchBucketException.builder()
+                    .message("The specified bucket does not exist: " + listObjectsV2Request.bucket())
+                    .build();
+        }
+        String prefix = Objects.requireNonNullElse(listObjectsV2Request.prefix(), "");
+        String after = listObjectsV2Request.continuationToken() != null
+                ? listObjectsV2Request.continuationToken()
+                : Objects.requireNonNullElse(listObjectsV2Request.startAfter(), "");
+        int maxKeys = listObjectsV2Request.maxKeys() == null
+                ? MAX_KEYS
+                : Math.min(listObjectsV2Request.maxKeys(), MAX_KEYS);
+
+        List<Path> objects;
+        try (Stream<Path> files = Files.walk(bucket)) {
+            objects = files.filter(Files::isRegularFile)
+                    .filter(file -> {
+                        String key = key(bucket, file);
+                        return key.startsWith(prefix) && key.compareTo(after) > 0;
+                    })
+                    .sorted(Comparator.comparing(file -> key(bucket, file)))
+                    .limit(maxKeys + 1L)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        boolean truncated = objects.size() > maxKeys;
+        List<S3Object> contents = objects.stream()
+                .limit(maxKeys)
+                .map(file -> s3Object(bucket, file))
+                .filter(Objects::nonNull)
+                .toList();
+        return ListObjectsV2Response.builder()
+                .name(listObjectsV2Request.bucket())
+                .prefix(listObjectsV2Request.prefix())
+                .maxKeys(maxKeys)
+                .keyCount(contents.size())
+                .contents(contents)
+                .isTruncated(truncated)
+                .continuationToken(listObjectsV2Request.continuationToken())
+                .nextContinuationToken(truncated && !contents.isEmpty()
+                        ? contents.get(contents.size() - 1).key()
+                        : null)
+                .build();
+    }
+
+    private S3Object s3Object(Path bucket, Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return S3Object.builder()
+                    .key(key(bucket, file))
+                    .size(attributes.size())
+                    .eTag(eTag(file, attributes))
+                    .lastModified(attributes.lastModifiedTime().toInstant())
+                    .build();
+        } catch (NoSuchFileException e) {
+            // deleted while listing
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private String buildObjectFullPath(String bucketName, String key){
-        return PATH + "/" + bucketName + "/" + key;
+    private String eTag(Path object, BasicFileAttributes attributes) throws IOException {
+        StoredETag stored = eTags.get(object);
+        if (stored != null
+                && stored.size() == attributes.size()
+                && stored.lastModified().equals(attributes.lastModifiedTime())) {
+            return stored.eTag();
+        }
+
+        MessageDigest md5 = md5();
+        try (InputStream content = new DigestInputStream(Files.newInputStream(object), md5)) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+        String eTag = "\"%s\"".formatted(HexFormat.of().formatHex(md5.digest()));
+        eTags.put(object, new StoredETag(eTag, attributes.size(), attributes.lastModifiedTime()));
+        return eTag;
+    }
+
+    private void delete(Path object) {
+        try {
+            Files.deleteIfExists(object);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        eTags.remove(object);
+    }
+
+    private InputStream throttle(InputStream content) {
+        return bytesPerSecond > 0
+                ? new ThrottledInputStream(content, bytesPerSecond)
+                : content;
+    }
+
+    private void simulateLatency() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.create("interrupted while simulating latency", e);
+        }
+    }
+
+    private static String key(Path bucket, Path file) {
+        return bucket.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static NoSuchKeyException noSuchKey(String key) {
+        return NoSuchKeyException.builder()
+                .statusCode(404)
+                .message("The specified key does not exist: " + key)
+                .build();
+    }
+
+    private static S3Exception s3Exception(int statusCode, String errorCode, String message) {
+        return (S3Exception) S3Exception.builder()
+                .statusCode(statusCode)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode(errorCode)
+                        .errorMessage(message)
+                        .build())
+                .message(message)
+                .build();
+    }
+
+    private Path buildObjectFullPath(String bucketName, String key){
+        return root.resolve(bucketName).resolve(key);
+    }
+
+    private record StoredETag(String eTag, long size, FileTime lastModified) {}
+
+    // paces reads so a transfer never goes faster than the cap
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long bytesRead;
+
+        ThrottledInputStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                pace(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                pace(n);
+            }
+            return n;
+        }
+
+        private void pace(int n) throws IOException {
+            bytesRead += n;
+            long due = start + TimeUnit.SECONDS.toNanos(bytesRead) / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while simulating bandwidth");
+            }
+        }
     }
 }
@@ -0,0 +1,361 @@
+package com.amigoscode.s3;
+
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// the async counterpart of FakeS3, reading and writing the same files
+// without blocking the caller. Object semantics (atomic writes, ETags,
+// missing keys) come from a FakeS3 over the same root, latency and
+// bandwidth are simulated by delaying completion rather than sleeping.
+public class FakeS3Async implements S3AsyncClient {
+
+    private static final String MULTIPART_UPLOADS = ".multipart-uploads";
+
+    private final Path root;
+    private final FakeS3 objects;
+    private final Duration latency;
+    private final long bytesPerSecond;
+
+    public FakeS3Async(Path root, Duration latency) {
+        this(root, latency, 0);
+    }
+
+    public FakeS3Async(Path root, Duration latency, long bytesPerSecond) {
+        this.root = root;
+        this.objects = new FakeS3(root, Duration.ZERO);
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public String serviceName() {
+        return "fake";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(
+            PutObjectRequest putObjectRequest,
+            AsyncRequestBody requestBody
+    ) {
+        return readBody(requestBody).thenCompose(bytes -> async(bytes.length, () ->
+                objects.putObject(putObjectRequest, RequestBody.fromBytes(bytes))
+        ));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getObject(
+            GetObjectRequest getObjectRequest,
+            AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer
+    ) {
+        Path object = buildObjectFullPath(
+                getObjectRequest.bucket(),
+                getObjectRequest.key()
+        );
+        CompletableFuture<T> result = asyncResponseTransformer.prepare();
+        async(() -> objects.headObject(HeadObjectRequest.builder()
+                .bucket(getObjectRequest.bucket())
+                .key(getObjectRequest.key())
+                .build())
+        ).thenCompose(head -> CompletableFuture.supplyAsync(() -> {
+            asyncResponseTransformer.onResponse(
+                    GetObjectResponse.builder()
+                            .contentLength(head.contentLength())
+                            .eTag(head.eTag())
+                            .lastModified(head.lastModified())
+                            .build()
+            );
+            asyncResponseTransformer.onStream(AsyncRequestBody.fromFile(object));
+            return null;
+        }, transfer(head.contentLength()))).whenComplete((ignored, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                asyncResponseTransformer.exceptionOccurred(cause);
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(
+            HeadObjectRequest headObjectRequest
+    ) {
+        return async(() -> objects.headObject(headObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(
+            DeleteObjectRequest deleteObjectRequest
+    ) {
+        return async(() -> objects.deleteObject(deleteObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(
+            DeleteObjectsRequest deleteObjectsRequest
+    ) {
+        return async(() -> objects.deleteObjects(deleteObjectsRequest));
+    }
+
+    @Override
+    public CompletableFuture<ListObjectsV2Response> listObjectsV2(
+            ListObjectsV2Request listObjectsV2Request
+    ) {
+        return async(() -> objects.listObjectsV2(listObjectsV2Request));
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(
+            CreateMultipartUploadRequest createMultipartUploadRequest
+    ) {
+        return async(() -> {
+            String uploadId = UUID.randomUUID().toString();
+            try {
+                Files.createDirectories(buildUploadPath(uploadId));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return CreateMultipartUploadResponse.builder()
+                    .bucket(createMultipartUploadRequest.bucket())
+                    .key(createMultipartUploadRequest.key())
+                    .uploadId(uploadId)
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(
+            UploadPartRequest uploadPartRequest,
+            AsyncRequestBody requestBody
+    ) {
+        Path upload = buildUploadPath(uploadPartRequest.uploadId());
+        return readBody(requestBody).thenCompose(bytes -> async(bytes.length, () -> {
+            if (!Files.isDirectory(upload)) {
+                throw noSuchUpload(uploadPartRequest.uploadId());
+            }
+            write(upload.resolve(String.valueOf(uploadPartRequest.partNumber())), bytes);
+            return UploadPartResponse.builder()
+                    .eTag("\"%s\"".formatted(md5Hex(bytes)))
+                    .build();
+        }));
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+            CompleteMultipartUploadRequest completeMultipartUploadRequest
+    ) {
+        Path upload = buildUploadPath(completeMultipartUploadRequest.uploadId());
+        Path object = buildObjectFullPath(
+                completeMultipartUploadRequest.bucket(),
+                completeMultipartUploadRequest.key()
+        );
+        return async(() -> {
+            if (!Files.isDirectory(upload)) {
+                throw noSuchUpload(completeMultipartUploadRequest.uploadId());
+            }
+            List<Path> parts = completeMultipartUploadRequest.multipartUpload().parts()
+                    .stream()
+                    .sorted(Comparator.comparing(CompletedPart::partNumber))
+                    .map(part -> upload.resolve(String.valueOf(part.partNumber())))
+                    .toList();
+            PutObjectResponse response;
+            try {
+                long contentLength = 0;
+                for (Path part : parts) {
+                    contentLength += Files.size(part);
+                }
+                response = objects.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(completeMultipartUploadRequest.bucket())
+                                .key(completeMultipartUploadRequest.key())
+                                .build(),
+                        RequestBody.fromContentProvider(
+                                () -> concat(parts),
+                                contentLength,
+                                "application/octet-stream"
+                        )
+                );
+                delete(upload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return CompleteMultipartUploadResponse.builder()
+                    .bucket(completeMultipartUploadRequest.bucket())
+                    .key(completeMultipartUploadRequest.key())
+                    .eTag(response.eTag())
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(
+            AbortMultipartUploadRequest abortMultipartUploadRequest
+    ) {
+        Path upload = buildUploadPath(abortMultipartUploadRequest.uploadId());
+        return async(() -> {
+            try {
+                delete(upload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return AbortMultipartUploadResponse.builder().build();
+        });
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> call) {
+        return async(0, call);
+    }
+
+    // completes after the latency plus the time the bytes take to travel
+    private <T> CompletableFuture<T> async(long bytes, Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, CompletableFuture.delayedExecutor(
+                latency.toNanos() + transferNanos(bytes),
+                TimeUnit.NANOSECONDS
+        ));
+    }
+
+    private Executor transfer(long bytes) {
+        return CompletableFuture.delayedExecutor(transferNanos(bytes), TimeUnit.NANOSECONDS);
+    }
+
+    private long transferNanos(long bytes) {
+        return bytesPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(bytes) / bytesPerSecond
+                : 0;
+    }
+
+    // parts are opened one at a time as the previous one is exhausted
+    private static InputStream concat(List<Path> parts) {
+        Iterator<Path> remaining = parts.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return remaining.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(remaining.next());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static String md5Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CompletableFuture<byte[]> readBody(AsyncRequestBody requestBody) {
+        return Flux.from(requestBody)
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    ByteBuffer chunk = buffer.duplicate();
+                    byte[] bytes = new byte[chunk.remaining()];
+                    chunk.get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray)
+                .toFuture();
+    }
+
+    private static void write(Path path, byte[] bytes) {
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(
+                    path,
+                    bytes,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static NoSuchUploadException noSuchUpload(String uploadId) {
+        return NoSuchUploadException.builder()
+                .message("The specified upload does not exist: " + uploadId)
+                .build();
+    }
+
+    private Path buildUploadPath(String uploadId) {
+        return root.resolve(MULTIPART_UPLOADS).resolve(uploadId);
+    }
+
+    private Path buildObjectFullPath(String bucketName, String key){
+        return root.resolve(bucketName).resolve(key);
+    }
+}
@@ -0,0 +1,75 @@
+package com.amigoscode.s3;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.nio.ByteBuffer;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveS3Service {
+
+    private final S3AsyncClient s3;
+    private final S3ObjectCache objectCache;
+
+    public ReactiveS3Service(S3AsyncClient s3, S3ObjectCache objectCache) {
+        this.s3 = s3;
+        this.objectCache = objectCache;
+    }
+
+    public Mono<S3ObjectContent> getObject(String bucketName, String key) {
+        return Mono.defer(() -> {
+            ByteBuffer cached = objectCache.get(bucketName, key);
+            if (cached != null) {
+                return Mono.just(new S3ObjectContent(
+                        Flux.just(cached),
+                        (long) cached.remaining()
+                ));
+            }
+
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build();
+            return Mono.fromFuture(() -> s3.getObject(
+                            getObjectRequest,
+                            AsyncResponseTransformer.<GetObjectResponse>toPublisher()
+                    ))
+                    .flatMap(publisher -> toContent(bucketName, key, publisher));
+        });
+    }
+
+    // small objects are buffered into the cache, anything larger is
+    // streamed through as it arrives
+    private Mono<S3ObjectContent> toContent(
+            String bucketName,
+            String key,
+            ResponsePublisher<GetObjectResponse> publisher
+    ) {
+        Long contentLength = publisher.response().contentLength();
+        if (!objectCache.accepts(contentLength)) {
+            return Mono.just(new S3ObjectContent(Flux.from(publisher), contentLength));
+        }
+
+        return Flux.from(publisher)
+                .reduce(
+                        ByteBuffer.allocate(contentLength.intValue()),
+                        ByteBuffer::put
+                )
+                .map(buffer -> {
+                    byte[] bytes = buffer.array();
+                    objectCache.put(bucketName, key, bytes);
+                    return new S3ObjectContent(
+                            Flux.just(ByteBuffer.wrap(bytes)),
+                            contentLength
+                    );
+                });
+    }
+}
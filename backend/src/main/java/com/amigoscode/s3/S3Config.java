@@ -3,9 +3,15 @@ package com.amigoscode.s3;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 @Configuration
 public class S3Config {
 
@@ -15,12 +21,35 @@ public class S3Config {
     @Value("${aws.s3.mock}")
     private boolean mock;
 
+    @Value("${aws.s3.mock-root:${user.home}/.frasini/s3}")
+    private Path mockRoot;
+
+    @Value("${aws.s3.mock-latency:0ms}")
+    private Duration mockLatency;
+
+    @Value("${aws.s3.mock-bandwidth:0B}")
+    private DataSize mockBandwidth;
+
+    @Value("${aws.s3.async.max-in-flight:64}")
+    private int maxInFlight;
+
     @Bean
     public S3Client s3Client(){
         return mock
-                ? new FakeS3()
+                ? new FakeS3(mockRoot, mockLatency, mockBandwidth.toBytes())
                 : S3Client.builder()
                 .region(Region.of(awsRegion))
                 .build();
     }
+
+    @Bean
+    public S3AsyncClient s3AsyncClient(){
+        return mock
+                ? new FakeS3Async(mockRoot, mockLatency, mockBandwidth.toBytes())
+                : S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxInFlight))
+                .build();
+    }
 }
@@ -0,0 +1,61 @@
+package com.amigoscode.s3;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+
+@Component
+public class S3ObjectCache {
+
+    private final Cache<ObjectKey, ByteBuffer> cache;
+    private final long maxObjectSize;
+    private final boolean offHeap;
+
+    public S3ObjectCache(
+            @Value("${aws.s3.cache.maximum-size:64MB}") DataSize maximumSize,
+            @Value("${aws.s3.cache.max-object-size:2MB}") DataSize maxObjectSize,
+            @Value("${aws.s3.cache.off-heap:false}") boolean offHeap,
+            MeterRegistry meterRegistry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((ObjectKey key, ByteBuffer bytes) -> bytes.capacity())
+                .recordStats()
+                .build();
+        this.maxObjectSize = maxObjectSize.toBytes();
+        this.offHeap = offHeap;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "s3-objects");
+    }
+
+    public boolean accepts(Long contentLength) {
+        return contentLength != null && contentLength <= maxObjectSize;
+    }
+
+    public ByteBuffer get(String bucketName, String key) {
+        ByteBuffer bytes = cache.getIfPresent(new ObjectKey(bucketName, key));
+        return bytes == null ? null : bytes.asReadOnlyBuffer();
+    }
+
+    public void put(String bucketName, String key, byte[] bytes) {
+        if (!accepts((long) bytes.length)) {
+            return;
+        }
+        // direct buffers keep large images out of the heap the GC has to scan
+        ByteBuffer buffer = offHeap
+                ? ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()
+                : ByteBuffer.wrap(bytes);
+        cache.put(new ObjectKey(bucketName, key), buffer);
+    }
+
+    public void invalidate(String bucketName, String key) {
+        cache.invalidate(new ObjectKey(bucketName, key));
+    }
+
+    private record ObjectKey(String bucketName, String key) {}
+}
@@ -0,0 +1,10 @@
+package com.amigoscode.s3;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+public record S3ObjectContent(
+        Flux<ByteBuffer> content,
+        Long contentLength
+) {}
@@ -1,22 +1,107 @@
 package com.amigoscode.s3;
 
+import com.amigoscode.exception.TooManyRequestsException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 @Service
-public class S3Service {
+public class S3Service implements DisposableBean {
 
     private final S3Client s3;
+    private final S3AsyncClient s3Async;
+    private final S3ObjectCache objectCache;
+    // caps the async requests waiting on S3, one permit per request, so a
+    // multipart upload holds one for each part it has in flight. Only the
+    // first request of an upload is turned away when none is free, later
+    // parts wait for one instead of failing an upload that already started
+    private final Semaphore inFlight;
+    private final long multipartThreshold;
+    private final int partSize;
+    // reads the bodies of single PUTs, the SDK completion threads must not
+    // block on a stream
+    private final ThreadPoolTaskExecutor uploadExecutor;
+    // reads multipart parts and waits there for permits, kept apart so the
+    // waiting never takes a thread a single PUT needs to be fed
+    private final ThreadPoolTaskExecutor multipartExecutor;
 
-    public S3Service(S3Client s3) {
+    public S3Service(
+            S3Client s3,
+            S3AsyncClient s3Async,
+            S3ObjectCache objectCache,
+            @Value("${aws.s3.async.max-in-flight:64}") int maxInFlight,
+            @Value("${aws.s3.multipart.threshold:8MB}") DataSize multipartThreshold,
+            @Value("${aws.s3.multipart.part-size:5MB}") DataSize partSize,
+            @Value("${aws.s3.async.upload-threads:4}") int uploadThreads,
+            @Value("${aws.s3.multipart.threads:4}") int multipartThreads,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
         this.s3 = s3;
+        this.s3Async = s3Async;
+        this.objectCache = objectCache;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.multipartThreshold = multipartThreshold.toBytes();
+        this.partSize = Math.toIntExact(partSize.toBytes());
+        // a single PUT holds a permit while its body is read, so max-in-flight
+        // queued reads are enough for uploadExecutor
+        this.uploadExecutor = executor(uploadThreads, maxInFlight, "s3-upload-", virtualThreads);
+        this.multipartExecutor = executor(multipartThreads, maxInFlight, "s3-multipart-", virtualThreads);
+    }
+
+    private static ThreadPoolTaskExecutor executor(
+            int threads,
+            int queueCapacity,
+            String threadNamePrefix,
+            boolean virtualThreads
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name(threadNamePrefix, 1).factory());
+        }
+        executor.initialize();
+        return executor;
     }
 
     public void putObejct(
@@ -29,20 +114,268 @@ public class S3Service {
                 .key(key)
                 .build();
         s3.putObject(objectRequest, RequestBody.fromBytes(file));
+        objectCache.invalidate(bucketName, key);
     }
 
-    public byte[] getObject(String bucketName, String key){
-        GetObjectRequest getObjectAclRequest = GetObjectRequest.builder()
+    public void putObject(
+            String bucketName,
+            String key,
+            InputStream content,
+            long contentLength
+    ){
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
+                .contentLength(contentLength)
                 .build();
+        s3.putObject(objectRequest, RequestBody.fromInputStream(content, contentLength));
+        objectCache.invalidate(bucketName, key);
+    }
+
+    // the stream is read on the upload executor and closed once the upload
+    // has completed or failed
+    public CompletableFuture<Void> putObjectAsync(
+            String bucketName,
+            String key,
+            InputStream content,
+            long contentLength
+    ){
+        CompletableFuture<Void> upload;
+        try {
+            upload = contentLength >= multipartThreshold
+                    ? multipartUpload(bucketName, key, content, contentLength)
+                    : withinInFlightLimit(() -> s3Async.putObject(
+                            PutObjectRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(key)
+                                    .contentLength(contentLength)
+                                    .build(),
+                            AsyncRequestBody.fromInputStream(
+                                    content,
+                                    contentLength,
+                                    uploadExecutor.getThreadPoolExecutor()
+                            )
+                    )).<Void>thenApply(response -> null);
+        } catch (RuntimeException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+        return upload
+                .whenComplete((ignored, e) -> closeQuietly(content))
+                .thenRun(() -> objectCache.invalidate(bucketName, key));
+    }
+
+    // parts are read one after the other and go up concurrently, a failed
+    // upload is aborted so S3 does not keep (and bill) its parts
+    private CompletableFuture<Void> multipartUpload(
+            String bucketName,
+            String key,
+            InputStream content,
+            long contentLength
+    ){
+        return withinInFlightLimit(() -> s3Async.createMultipartUpload(
+                CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .build()
+        )).thenCompose(upload -> readParts(bucketName, key, upload, content, contentLength)
+                .thenCompose(parts -> s3Async.completeMultipartUpload(
+                        CompleteMultipartUploadRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(upload.uploadId())
+                                .multipartUpload(CompletedMultipartUpload.builder()
+                                        .parts(parts)
+                                        .build())
+                                .build()
+                ))
+                .<Void>thenApply(response -> null)
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        s3Async.abortMultipartUpload(
+                                AbortMultipartUploadRequest.builder()
+                                        .bucket(bucketName)
+                                        .key(key)
+                                        .uploadId(upload.uploadId())
+                                        .build()
+                        );
+                    }
+                }));
+    }
+
+    private CompletableFuture<List<CompletedPart>> readParts(
+            String bucketName,
+            String key,
+            CreateMultipartUploadResponse upload,
+            InputStream content,
+            long contentLength
+    ){
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> uploadParts(bucketName, key, upload, content, contentLength),
+                    multipartExecutor
+            ).thenCompose(parts -> parts);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.failedFuture(
+                    new TooManyRequestsException("too many S3 uploads waiting, try again later")
+            );
+        }
+    }
+
+    // runs on the multipart executor, a part is only read from the stream
+    // once a permit is free, so at most max-in-flight parts are held in memory
+    private CompletableFuture<List<CompletedPart>> uploadParts(
+            String bucketName,
+            String key,
+            CreateMultipartUploadResponse upload,
+            InputStream content,
+            long contentLength
+    ){
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            for (long offset = 0; offset < contentLength; offset += partSize) {
+                if (parts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    // the upload is aborted anyway, stop reading the stream
+                    break;
+                }
+                int partNumber = parts.size() + 1;
+                int length = (int) Math.min(partSize, contentLength - offset);
+                inFlight.acquire();
+                CompletableFuture<UploadPartResponse> response;
+                try {
+                    byte[] part = content.readNBytes(length);
+                    if (part.length < length) {
+                        throw new EOFException("upload stream ended before its content length");
+                    }
+                    response = s3Async.uploadPart(
+                            UploadPartRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(key)
+                                    .uploadId(upload.uploadId())
+                                    .partNumber(partNumber)
+                                    .contentLength((long) length)
+                                    .build(),
+                            AsyncRequestBody.fromBytes(part)
+                    );
+                } catch (IOException | RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                parts.add(response
+                        .whenComplete((ignored, e) -> inFlight.release())
+                        .thenApply(partResponse -> CompletedPart.builder()
+                                .partNumber(partNumber)
+                                .eTag(partResponse.eTag())
+                                .build()));
+            }
+        } catch (IOException e) {
+            parts.add(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            parts.add(CompletableFuture.failedFuture(e));
+        } catch (RuntimeException e) {
+            parts.add(CompletableFuture.failedFuture(e));
+        }
+
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> parts.stream()
+                        .map(CompletableFuture::join)
+                        .toList());
+    }
 
-        ResponseInputStream<GetObjectResponse> res = s3.getObject(getObjectAclRequest);
+    private <T> CompletableFuture<T> withinInFlightLimit(Supplier<CompletableFuture<T>> operation) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new TooManyRequestsException("too many S3 requests in flight, try again later")
+            );
+        }
+        CompletableFuture<T> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return result.whenComplete((value, e) -> inFlight.release());
+    }
 
+    private static void closeQuietly(InputStream content) {
         try {
-            return res.readAllBytes();
+            content.close();
+        } catch (IOException ignored) {
+            // the upload already has its outcome
+        }
+    }
+
+    public ResponseInputStream<GetObjectResponse> getObjectStream(String bucketName, String key){
+        ByteBuffer cached = objectCache.get(bucketName, key);
+        if (cached != null) {
+            return new ResponseInputStream<>(
+                    GetObjectResponse.builder()
+                            .contentLength((long) cached.remaining())
+                            .build(),
+                    new ByteBufferInputStream(cached)
+            );
+        }
+
+        ResponseInputStream<GetObjectResponse> res = getObjectStreamUncached(bucketName, key);
+        if (!objectCache.accepts(res.response().contentLength())) {
+            return res;
+        }
+
+        byte[] bytes;
+        try (res) {
+            bytes = res.readAllBytes();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
+        objectCache.put(bucketName, key, bytes);
+        return new ResponseInputStream<>(res.response(), new ByteArrayInputStream(bytes));
+    }
+
+    // for objects read once, like originals on their way to the resizer,
+    // which would only push hot images out of the cache
+    public ResponseInputStream<GetObjectResponse> getObjectStreamUncached(String bucketName, String key){
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        return s3.getObject(getObjectRequest);
+    }
+
+    public ListObjectsV2Response listObjects(
+            String bucketName,
+            String prefix,
+            String continuationToken,
+            int maxKeys
+    ){
+        return s3.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .continuationToken(continuationToken)
+                .maxKeys(maxKeys)
+                .build());
+    }
+
+    // one request for up to 1000 keys, returns the keys S3 could not delete
+    public List<String> deleteObjects(String bucketName, List<String> keys){
+        DeleteObjectsResponse response = s3.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream()
+                                .map(key -> ObjectIdentifier.builder().key(key).build())
+                                .toList())
+                        .quiet(true)
+                        .build())
+                .build());
+        keys.forEach(key -> objectCache.invalidate(bucketName, key));
+        return response.errors().stream()
+                .map(S3Error::key)
+                .toList();
+    }
+
+    @Override
+    public void destroy() {
+        uploadExecutor.shutdown();
+        multipartExecutor.shutdown();
     }
 }
@@ -0,0 +1,135 @@
+package com.amigoscode.security;
+
+import com.amigoscode.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the slow hashing of a {@link PasswordEncoder} on a small, bounded pool
+ * so a burst of logins or registrations cannot take every core. Requests that
+ * do not fit in the queue fail fast with {@link TooManyRequestsException}.
+ * Bulk registrations hash on a pool of their own, they queue behind each
+ * other instead of being rejected and never take threads from logins.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolTaskExecutor executor;
+    private final ThreadPoolTaskExecutor bulkExecutor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public BoundedPasswordEncoder(
+            PasswordEncoder delegate,
+            int threads,
+            int queueCapacity,
+            int bulkThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.delegate = delegate;
+        this.executor = executor(threads, queueCapacity, "password-hashing-");
+        this.bulkExecutor = executor(bulkThreads, Integer.MAX_VALUE, "bulk-password-hashing-");
+
+        this.encodeTimer = Timer.builder("password.hashing")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queued", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.bulk.queued", bulkExecutor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .register(meterRegistry);
+    }
+
+    private static ThreadPoolTaskExecutor executor(int threads, int queueCapacity, String threadNamePrefix) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<Future<String>> results = rawPasswords.stream()
+                .map(rawPassword -> bulkExecutor.submit(
+                        () -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword))
+                ))
+                .toList();
+        try {
+            List<String> encoded = new ArrayList<>(results.size());
+            for (Future<String> result : results) {
+                encoded.add(await(result));
+            }
+            return encoded;
+        } finally {
+            results.forEach(result -> result.cancel(true));
+        }
+    }
+
+    // an upgrade costs one more hash after a successful login, skip it while
+    // the pool is saturated and let a later login do it
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return !isSaturated() && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private boolean isSaturated() {
+        return executor.getActiveCount() >= executor.getMaxPoolSize()
+                && executor.getThreadPoolExecutor().getQueue().remainingCapacity() == 0;
+    }
+
+    private <T> T run(Timer timer, Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = executor.submit(() -> timer.recordCallable(hashing));
+        } catch (TaskRejectedException e) {
+            throw new TooManyRequestsException("too many requests, please try again later");
+        }
+        return await(result);
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        bulkExecutor.shutdown();
+    }
+}
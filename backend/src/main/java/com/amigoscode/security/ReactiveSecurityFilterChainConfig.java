@@ -0,0 +1,60 @@
+package com.amigoscode.security;
+
+import com.amigoscode.customer.CustomerReactiveDataAccessService;
+import com.amigoscode.jwt.JWTUtil;
+import com.amigoscode.jwt.ReactiveJWTAuthenticationFilter;
+import com.amigoscode.jwt.RevokedSessions;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityFilterChainConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(
+            ServerHttpSecurity http,
+            JWTUtil jwtUtil,
+            RevokedSessions revokedSessions,
+            CustomerReactiveDataAccessService customerDAO
+    ) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .cors(Customizer.withDefaults())
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(
+                                HttpMethod.GET,
+                                "/ping",
+                                "/actuator/health",
+                                "/actuator/health/**",
+                                "/actuator/info",
+                                "/api/v1/customers/*/profile-image"
+                        )
+                        .permitAll()
+                        .anyExchange()
+                        .authenticated()
+                )
+                .addFilterAt(
+                        new ReactiveJWTAuthenticationFilter(jwtUtil, revokedSessions, customerDAO),
+                        SecurityWebFiltersOrder.AUTHENTICATION
+                )
+                .exceptionHandling(exceptionHandling -> exceptionHandling
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED))
+                )
+                .build();
+    }
+}
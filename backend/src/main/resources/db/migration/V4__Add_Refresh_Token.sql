@@ -0,0 +1,15 @@
+-- one row per issued refresh token, only the sha-256 of the token is stored;
+-- all tokens of one login share a family so reuse can revoke the whole chain
+CREATE TABLE refresh_token(
+    token_hash BYTEA PRIMARY KEY,
+    family_id UUID NOT NULL,
+    customer_id BIGINT NOT NULL REFERENCES customer(id) ON DELETE CASCADE,
+    expires_at TIMESTAMPTZ NOT NULL,
+    used_at TIMESTAMPTZ,
+    revoked_at TIMESTAMPTZ
+);
+
+CREATE INDEX refresh_token_family_id_idx ON refresh_token(family_id);
+
+CREATE INDEX refresh_token_revoked_at_idx ON refresh_token(revoked_at)
+    WHERE revoked_at IS NOT NULL;
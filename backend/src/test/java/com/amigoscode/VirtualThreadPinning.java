@@ -0,0 +1,53 @@
+package com.amigoscode;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a task on many virtual threads at once and returns the
+ * jdk.VirtualThreadPinned events JFR saw meanwhile, i.e. every time one of
+ * them blocked while stuck to its carrier thread.
+ */
+public final class VirtualThreadPinning {
+
+    private VirtualThreadPinning() {}
+
+    public static List<RecordedEvent> pinnedEvents(int concurrency, Callable<?> task) throws Exception {
+        Path dump = Files.createTempFile("virtual-thread-pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withoutThreshold();
+            recording.start();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<? extends Future<?>> results = IntStream.range(0, concurrency)
+                        .mapToObj(i -> executor.submit(task))
+                        .toList();
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            }
+            recording.stop();
+            recording.dump(dump);
+            return RecordingFile.readAllEvents(dump);
+        } finally {
+            deleteQuietly(dump);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+}
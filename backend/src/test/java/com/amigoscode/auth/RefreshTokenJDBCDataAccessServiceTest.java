@@ -0,0 +1,92 @@
+package com.amigoscode.auth;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerJDBCDataAccessService;
+import com.amigoscode.customer.CustomerRowMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.amigoscode.customer.Gender.MALE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshTokenJDBCDataAccessServiceTest extends AbstractTestcontainers {
+
+    private RefreshTokenJDBCDataAccessService underTest;
+    private Integer customerId;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RefreshTokenJDBCDataAccessService(getJdbcTemplate());
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                "password", 20,
+                MALE
+        );
+        new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper())
+                .insertCustomer(customer);
+        customerId = customer.getId();
+    }
+
+    @Test
+    void refreshTokenCanOnlyBeUsedOnce() {
+        // Given
+        byte[] hash = RefreshTokenService.hash(UUID.randomUUID().toString());
+        underTest.insertRefreshToken(new RefreshToken(
+                hash, UUID.randomUUID(), customerId,
+                Instant.now().plus(1, ChronoUnit.DAYS), null, null
+        ));
+
+        // When
+        Optional<RefreshToken> first = underTest.markRefreshTokenUsed(hash, Instant.now());
+        Optional<RefreshToken> second = underTest.markRefreshTokenUsed(hash, Instant.now());
+
+        // Then
+        assertThat(first).isPresent().hasValueSatisfying(token -> {
+            assertThat(token.customerId()).isEqualTo(customerId);
+            assertThat(token.usedAt()).isNotNull();
+        });
+        assertThat(second).isEmpty();
+    }
+
+    @Test
+    void revokedFamilyCannotBeRefreshed() {
+        // Given
+        UUID familyId = UUID.randomUUID();
+        byte[] hash = RefreshTokenService.hash(UUID.randomUUID().toString());
+        underTest.insertRefreshToken(new RefreshToken(
+                hash, familyId, customerId,
+                Instant.now().plus(1, ChronoUnit.DAYS), null, null
+        ));
+        Instant before = Instant.now().minusSeconds(1);
+
+        // When
+        underTest.revokeFamily(familyId, Instant.now());
+
+        // Then
+        assertThat(underTest.markRefreshTokenUsed(hash, Instant.now())).isEmpty();
+        assertThat(underTest.selectFamiliesRevokedSince(before)).contains(familyId);
+    }
+
+    @Test
+    void deleteExpiredRefreshTokens() {
+        // Given
+        byte[] hash = RefreshTokenService.hash(UUID.randomUUID().toString());
+        underTest.insertRefreshToken(new RefreshToken(
+                hash, UUID.randomUUID(), customerId,
+                Instant.now().minusSeconds(1), null, null
+        ));
+
+        // When
+        underTest.deleteExpiredRefreshTokens(Instant.now());
+
+        // Then
+        assertThat(underTest.selectRefreshToken(hash)).isEmpty();
+    }
+}
@@ -0,0 +1,146 @@
+package com.amigoscode.auth;
+
+import com.amigoscode.jwt.JWTUtil;
+import com.amigoscode.jwt.RevokedSessions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenDAO refreshTokenDAO;
+    private RevokedSessions revokedSessions;
+    private RefreshTokenService underTest;
+
+    @BeforeEach
+    void setUp() {
+        JWTUtil jwtUtil = new JWTUtil();
+        revokedSessions = new RevokedSessions(jwtUtil, new SimpleMeterRegistry());
+        underTest = new RefreshTokenService(
+                refreshTokenDAO, revokedSessions, jwtUtil, Duration.ofDays(30)
+        );
+    }
+
+    @Test
+    void issueStoresOnlyTheHashOfANewFamily() {
+        // When
+        IssuedRefreshToken actual = underTest.issue(1);
+
+        // Then
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenDAO).insertRefreshToken(captor.capture());
+        RefreshToken stored = captor.getValue();
+        assertThat(stored.tokenHash()).isEqualTo(RefreshTokenService.hash(actual.token()));
+        assertThat(stored.familyId()).isEqualTo(actual.familyId());
+        assertThat(stored.customerId()).isEqualTo(1);
+        assertThat(stored.expiresAt()).isAfter(Instant.now().plus(Duration.ofDays(29)));
+    }
+
+    @Test
+    void rotateIssuesANewTokenInTheSameFamily() {
+        // Given
+        UUID familyId = UUID.randomUUID();
+        byte[] hash = RefreshTokenService.hash("token");
+        when(refreshTokenDAO.markRefreshTokenUsed(eq(hash), any())).thenReturn(Optional.of(
+                new RefreshToken(hash, familyId, 1, Instant.now().plusSeconds(60), Instant.now(), null)
+        ));
+
+        // When
+        IssuedRefreshToken actual = underTest.rotate("token");
+
+        // Then
+        assertThat(actual.familyId()).isEqualTo(familyId);
+        assertThat(actual.customerId()).isEqualTo(1);
+        assertThat(actual.token()).isNotEqualTo("token");
+        verify(refreshTokenDAO).insertRefreshToken(any());
+    }
+
+    @Test
+    void rotateDoesNotExtendTheSessionPastItsExpiry() {
+        // Given
+        UUID familyId = UUID.randomUUID();
+        byte[] hash = RefreshTokenService.hash("token");
+        Instant expiresAt = Instant.now().plusSeconds(60);
+        when(refreshTokenDAO.markRefreshTokenUsed(eq(hash), any())).thenReturn(Optional.of(
+                new RefreshToken(hash, familyId, 1, expiresAt, Instant.now(), null)
+        ));
+
+        // When
+        underTest.rotate("token");
+
+        // Then
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenDAO).insertRefreshToken(captor.capture());
+        assertThat(captor.getValue().expiresAt()).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void rotateRevokesTheFamilyWhenATokenIsReused() {
+        // Given
+        UUID familyId = UUID.randomUUID();
+        byte[] hash = RefreshTokenService.hash("token");
+        when(refreshTokenDAO.markRefreshTokenUsed(eq(hash), any())).thenReturn(Optional.empty());
+        when(refreshTokenDAO.selectRefreshToken(hash)).thenReturn(Optional.of(
+                new RefreshToken(hash, familyId, 1, Instant.now().plusSeconds(60), Instant.now(), null)
+        ));
+
+        // When
+        assertThatThrownBy(() -> underTest.rotate("token"))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("invalid refresh token");
+
+        // Then
+        verify(refreshTokenDAO).revokeFamily(eq(familyId), any());
+        assertThat(revokedSessions.isRevoked(familyId.toString())).isTrue();
+    }
+
+    @Test
+    void rotateWillThrowWhenTokenIsUnknown() {
+        // Given
+        byte[] hash = RefreshTokenService.hash("token");
+        when(refreshTokenDAO.markRefreshTokenUsed(eq(hash), any())).thenReturn(Optional.empty());
+        when(refreshTokenDAO.selectRefreshToken(hash)).thenReturn(Optional.empty());
+
+        // When
+        assertThatThrownBy(() -> underTest.rotate("token"))
+                .isInstanceOf(BadCredentialsException.class);
+
+        // Then
+        verify(refreshTokenDAO, never()).revokeFamily(any(), any());
+        verify(refreshTokenDAO, never()).insertRefreshToken(any());
+    }
+
+    @Test
+    void syncRevokedSessionsLoadsRevocationsFromOtherNodes() {
+        // Given
+        UUID familyId = UUID.randomUUID();
+        when(refreshTokenDAO.selectFamiliesRevokedSince(any())).thenReturn(List.of(familyId));
+
+        // When
+        underTest.syncRevokedSessions();
+
+        // Then
+        assertThat(revokedSessions.isRevoked(familyId.toString())).isTrue();
+    }
+}
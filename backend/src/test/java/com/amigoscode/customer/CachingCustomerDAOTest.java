@@ -0,0 +1,201 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDAOTest {
+
+    @Mock
+    private CustomerDAO delegate;
+    private InProcessCustomerCacheInvalidationChannel invalidationChannel;
+    private CachingCustomerDAO underTest;
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+
+    @BeforeEach
+    void setUp() {
+        invalidationChannel = new InProcessCustomerCacheInvalidationChannel();
+        underTest = newCachingCustomerDAO();
+    }
+
+    private CachingCustomerDAO newCachingCustomerDAO() {
+        return new CachingCustomerDAO(
+                delegate,
+                invalidationChannel,
+                100,
+                Duration.ofMinutes(1),
+                new SimpleMeterRegistry()
+        );
+    }
+
+    @Test
+    void selectCustomerByIdReadsThrough() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).contains(alex);
+        assertThat(actual.get()).isNotSameAs(alex);
+        verify(delegate, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void willNotCacheMissingCustomers() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(1);
+
+        // Then
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void existsChecksAreAnsweredFromCache() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        // When
+        boolean existsById = underTest.existsCustomerWithId(1);
+        boolean existsByEmail = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(existsById).isTrue();
+        assertThat(existsByEmail).isTrue();
+        verify(delegate, never()).existsCustomerWithId(any());
+        verify(delegate, never()).existsCustomerWithEmail(any());
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsMissingIds() {
+        // Given
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", "password", 19, Gender.FEMALE);
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.of(jamila));
+        underTest.selectCustomerById(2);
+        when(delegate.selectCustomersByIds(List.of(3, 1))).thenReturn(List.of(alex));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(3, 2, 1));
+
+        // Then
+        assertThat(actual).containsExactly(alex, jamila);
+    }
+
+    @Test
+    void updateInvalidatesIdAndOldEmail() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alex.new@gmail.com");
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        underTest.existsCustomerWithEmail("alex@gmail.com");
+        underTest.selectCustomerById(1);
+        verify(delegate).existsCustomerWithEmail("alex@gmail.com");
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void deleteInvalidatesOtherNodesThroughChannel() {
+        // Given
+        CachingCustomerDAO otherNode = newCachingCustomerDAO();
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        otherNode.selectCustomerById(1);
+
+        // When
+        underTest.deleteCustomerById(1);
+
+        // Then
+        otherNode.selectCustomerById(1);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void ownWritesAreNotEvictedAgainByTheChannel() {
+        // Given
+        invalidationChannel = new InProcessCustomerCacheInvalidationChannel();
+        CachingCustomerDAO[] node = new CachingCustomerDAO[1];
+        // a read that lands after the local eviction, before the channel fans out
+        invalidationChannel.subscribe(id -> node[0].selectCustomerById(1));
+        node[0] = newCachingCustomerDAO();
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        node[0].selectCustomerById(1);
+
+        // When
+        node[0].updateCustomer(alex);
+
+        // Then
+        node[0].selectCustomerById(1);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void loadThatOverlapsAnInvalidationIsNotCached() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenAnswer(invocation -> {
+            // another node updates the customer after we read the row
+            invalidationChannel.publish(1);
+            return Optional.of(alex);
+        });
+
+        // When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(1);
+
+        // Then
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void invalidationLeavesOtherCustomersEmailsCached() {
+        // Given
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", "password", 19, Gender.FEMALE);
+        when(delegate.selectCustomersByIds(List.of(1, 2))).thenReturn(List.of(alex, jamila));
+        underTest.selectCustomersByIds(List.of(1, 2));
+
+        // When
+        invalidationChannel.publish(1);
+
+        // Then
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+        verify(delegate, never()).existsCustomerWithEmail("jamila@gmail.com");
+    }
+
+    @Test
+    void invalidateAllMessageClearsCache() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        // When
+        invalidationChannel.publish(null);
+
+        // Then
+        underTest.selectCustomerById(1);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+}
@@ -0,0 +1,58 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerExportServiceTest {
+
+    @Mock
+    private CustomerDAO customerDAO;
+    private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CustomerExportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerExportService(customerDAO, customerDTOMapper, objectMapper);
+    }
+
+    @Test
+    void canExportCustomersAsNdjson() throws IOException {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        doAnswer(invocation -> {
+            Consumer<Customer> action = invocation.getArgument(0);
+            List.of(alex, jamila).forEach(action);
+            return null;
+        }).when(customerDAO).forEachCustomer(any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        underTest.exportCustomers(out);
+
+        // Then
+        assertThat(out.toString()).endsWith("}\n");
+        List<String> lines = out.toString().lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines.get(0), CustomerDTO.class))
+                .isEqualTo(customerDTOMapper.apply(alex));
+        assertThat(objectMapper.readValue(lines.get(1), CustomerDTO.class))
+                .isEqualTo(customerDTOMapper.apply(jamila));
+    }
+}
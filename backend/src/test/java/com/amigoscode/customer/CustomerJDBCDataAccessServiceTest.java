@@ -1,15 +1,22 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.VirtualThreadPinning;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.amigoscode.customer.Gender.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
@@ -42,6 +49,57 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(customers).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersReturnsFilteredPageAfterCursor() {
+        // Given
+        String name = "Page_" + UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    name + " " + i,
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    "password", 30 + i,
+                    FEMALE
+            ));
+        }
+        CustomerPageRequest firstPage = new CustomerPageRequest(
+                0, 2, FEMALE, 30, 32, name
+        );
+
+        // When
+        List<Customer> first = underTest.selectCustomers(firstPage);
+        List<Customer> second = underTest.selectCustomers(new CustomerPageRequest(
+                first.get(1).getId(), 2, FEMALE, 30, 32, name
+        ));
+
+        // Then
+        assertThat(first).extracting(Customer::getName)
+                .containsExactly(name + " 0", name + " 1");
+        assertThat(second).extracting(Customer::getName)
+                .containsExactly(name + " 2");
+    }
+
+    @Test
+    void forEachCustomerVisitsEveryCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                MALE
+        ));
+        List<Customer> visited = new ArrayList<>();
+
+        // When
+        underTest.forEachCustomer(visited::add);
+
+        // Then
+        assertThat(visited)
+                .extracting(Customer::getEmail)
+                .contains(email);
+        assertThat(visited).hasSameSizeAs(underTest.selectAllCustomers());
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -74,6 +132,30 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         });
     }
 
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Integer> ids = Stream.of(
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                )
+                .map(email -> {
+                    underTest.insertCustomer(new Customer(
+                            FAKER.name().fullName(), email, "password", 20, MALE
+                    ));
+                    return underTest.selectUserByEmail(email).orElseThrow().getId();
+                })
+                .toList();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(
+                List.of(ids.get(1), ids.get(0), -1)
+        );
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(ids.get(0), ids.get(1));
+    }
+
     @Test
     void willReturnEmptyWhenSelectCustomerById() {
         // Given
@@ -86,6 +168,43 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isEmpty();
     }
 
+    @Test
+    void queriesDoNotPinVirtualThreads() throws Exception {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                "password", 20,
+                MALE
+        );
+        underTest.insertCustomer(customer);
+
+        // When
+        var actual = VirtualThreadPinning.pinnedEvents(
+                50, () -> underTest.selectCustomerById(customer.getId())
+        );
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomerWillThrowWhenEmailExists() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(), email, "password", 20, MALE
+        ));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(), email, "password", 30, FEMALE
+        )))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessage("customer with email [%s] already exists".formatted(email));
+    }
+
     @Test
     void insertCustomer() {
         // Given
@@ -119,6 +238,44 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         });
     }
 
+    @Test
+    void insertCustomersInBatchAndSelectExistingEmails() {
+        // Given
+        String first = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String second = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String missing = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        List<String> inserted = underTest.insertCustomers(List.of(
+                new Customer(FAKER.name().fullName(), first, "password", 20, MALE),
+                new Customer(FAKER.name().fullName(), second, "password", 30, FEMALE)
+        ));
+
+        // Then
+        assertThat(inserted).containsExactlyInAnyOrder(first, second);
+        assertThat(underTest.selectExistingEmails(List.of(first, second, missing)))
+                .containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    void insertCustomersSkipsTakenEmails() {
+        // Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), taken, "password", 20, MALE));
+
+        // When
+        List<String> inserted = underTest.insertCustomers(List.of(
+                new Customer(FAKER.name().fullName(), taken, "password", 20, MALE),
+                new Customer(FAKER.name().fullName(), free, "password", 30, FEMALE)
+        ));
+
+        // Then
+        assertThat(inserted).containsExactly(free);
+        assertThat(underTest.selectExistingEmails(List.of(taken, free)))
+                .containsExactlyInAnyOrder(taken, free);
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -452,6 +609,77 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         });
     }
 
+    @Test
+    void updateCustomerBumpsVersionAndRejectsStaleVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                MALE
+        ));
+        Customer current = underTest.selectUserByEmail(email).orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(current.getId());
+        update.setVersion(current.getVersion());
+        update.setAge(42);
+
+        // When
+        Customer updated = underTest.updateCustomer(update).orElseThrow();
+
+        // Then
+        assertThat(updated.getAge()).isEqualTo(42);
+        assertThat(updated.getName()).isEqualTo(current.getName());
+        assertThat(updated.getVersion()).isEqualTo(current.getVersion() + 1);
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void updateCustomerReturnsEmptyWhenNothingChanged() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                MALE
+        ));
+        Customer current = underTest.selectUserByEmail(email).orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(current.getId());
+        update.setVersion(current.getVersion());
+        update.setEmail(email);
+        update.setAge(20);
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(current.getId()))
+                .hasValueSatisfying(c -> {
+                    assertThat(c.getVersion()).isEqualTo(current.getVersion());
+                    assertThat(c.getTokenVersion()).isEqualTo(current.getTokenVersion());
+                });
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenCustomerDoesNotExist() {
+        // Given
+        Customer update = new Customer();
+        update.setId(-1);
+        update.setAge(42);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
     @Test
     void canUpdateProfileImageId() {
         String profileImageId = "22222";
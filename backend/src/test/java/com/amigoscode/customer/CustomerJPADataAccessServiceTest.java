@@ -5,8 +5,22 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
@@ -37,6 +51,22 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        // Given
+        CustomerPageRequest pageRequest = new CustomerPageRequest(
+                10, 20, Gender.MALE, 18, 30, "Al_"
+        );
+
+        // When
+        underTest.selectCustomers(pageRequest);
+
+        // Then
+        verify(customerRepository).findCustomersAfter(
+                10, Gender.MALE, 18, 30, "Al\\_%", PageRequest.ofSize(20)
+        );
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -49,6 +79,18 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Integer> ids = List.of(1, 2);
+
+        // When
+        underTest.selectCustomersByIds(ids);
+
+        // Then
+        verify(customerRepository).findAllById(ids);
+    }
+
     @Test
     void insertCustomer() {
         // Given
@@ -66,6 +108,45 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomerWillThrowDuplicateKeyWhenEmailIsTaken() {
+        // Given
+        Customer customer = new Customer(
+                "foo",
+                "foo@gmail.com",
+                "password", 20,
+                Gender.MALE
+        );
+        when(customerRepository.save(customer)).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement",
+                new ConstraintViolationException("duplicate key", null, "customer_email_unique")
+        ));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessage("customer with email [foo@gmail.com] already exists");
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(new Customer(
+                "foo",
+                "foo@gmail.com",
+                "password", 20,
+                Gender.MALE
+        ));
+
+        // When
+        List<String> inserted = underTest.insertCustomers(customers);
+
+        // Then
+        verify(customerRepository).saveAll(customers);
+        assertThat(inserted).containsExactly("foo@gmail.com");
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -112,12 +193,88 @@ class CustomerJPADataAccessServiceTest {
                 "password", 20,
                 Gender.FEMALE
         );
+        customer.setVersion(2);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        when(customerRepository.save(customer)).thenReturn(customer);
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setVersion(2);
+        update.setName("bar");
 
         // When
-        underTest.updateCustomer(customer);
+        Optional<Customer> actual = underTest.updateCustomer(update);
 
         // Then
-        verify(customerRepository).save(customer);
+        assertThat(actual).contains(customer);
+        assertThat(customer.getName()).isEqualTo("bar");
+        assertThat(customer.getEmail()).isEqualTo("foo@gmail.com");
+    }
+
+    @Test
+    void updateCustomerReturnsEmptyWhenNothingChanged() {
+        // Given
+        Customer customer = new Customer(
+                1,
+                "foo",
+                "foo@gmail.com",
+                "password", 20,
+                Gender.FEMALE
+        );
+        customer.setVersion(2);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setName("foo");
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+        verify(customerRepository, never()).save(any());
+    }
+
+    @Test
+    void willThrowWhenUpdatingMissingCustomer() {
+        // Given
+        when(customerRepository.findById(1)).thenReturn(Optional.empty());
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setName("bar");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+        verify(customerRepository, never()).save(any());
+    }
+
+    @Test
+    void willThrowWhenUpdatingStaleCustomer() {
+        // Given
+        Customer customer = new Customer(
+                1,
+                "foo",
+                "foo@gmail.com",
+                "password", 20,
+                Gender.FEMALE
+        );
+        customer.setVersion(3);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setVersion(2);
+        update.setName("bar");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        verify(customerRepository, never()).save(any());
     }
 
     @Test
@@ -0,0 +1,215 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void insertCustomerAssignsIdAndIndexesEmail() {
+        // Given
+        Customer customer = new Customer(
+                "Ali", "ali@gmail.com", "password", 30, Gender.MALE
+        );
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        Optional<Customer> actual = underTest.selectUserByEmail("ali@gmail.com");
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(3);
+            assertThat(c.getVersion()).isZero();
+            assertThat(underTest.selectCustomerById(c.getId())).contains(c);
+        });
+        assertThat(underTest.existsCustomerWithEmail("ali@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerWillThrowWhenEmailExists() {
+        // Given
+        Customer customer = new Customer(
+                "Alex", "alex@gmail.com", "password", 30, Gender.MALE
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void insertCustomersSkipsTakenEmails() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer("Ali", "ali@gmail.com", "password", 30, Gender.MALE),
+                new Customer("Alex", "alex@gmail.com", "password", 30, Gender.MALE)
+        );
+
+        // When
+        List<String> inserted = underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(inserted).containsExactly("ali@gmail.com");
+        assertThat(underTest.existsCustomerWithEmail("ali@gmail.com")).isTrue();
+        assertThat(underTest.selectAllCustomers()).hasSize(3);
+    }
+
+    @Test
+    void returnedCustomersAreCopies() {
+        // Given
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+        // When
+        customer.setName("Mutated");
+
+        // Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void updateCustomerReplacesInPlaceAndReindexesEmail() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setVersion(0);
+        update.setEmail("alex.new@gmail.com");
+        update.setAge(22);
+
+        // When
+        Customer actual = underTest.updateCustomer(update).orElseThrow();
+
+        // Then
+        assertThat(actual.getEmail()).isEqualTo("alex.new@gmail.com");
+        assertThat(actual.getAge()).isEqualTo(22);
+        assertThat(actual.getName()).isEqualTo("Alex");
+        assertThat(actual.getVersion()).isEqualTo(1);
+        assertThat(actual.getTokenVersion()).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectUserByEmail("alex.new@gmail.com")).contains(actual);
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenVersionIsStale() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setVersion(5);
+        update.setName("Ali");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void updateCustomerReturnsEmptyWhenNothingChanged() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setVersion(0);
+        update.setName("Alex");
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isZero());
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenCustomerDoesNotExist() {
+        // Given
+        Customer update = new Customer();
+        update.setId(42);
+        update.setEmail("nobody@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+        assertThat(underTest.existsCustomerWithEmail("nobody@gmail.com")).isFalse();
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenEmailTaken() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("jamila@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectUserByEmail("jamila@gmail.com"))
+                .hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(2));
+    }
+
+    @Test
+    void deleteCustomerByIdRemovesEmailIndex() {
+        // When
+        underTest.deleteCustomerById(2);
+
+        // Then
+        assertThat(underTest.existsCustomerWithId(2)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isFalse();
+    }
+
+    @Test
+    void updateCustomerProfileImage() {
+        // When
+        underTest.updateCustomerProfileImage("2222", 1);
+
+        // Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getProfileImageId()).isEqualTo("2222"));
+    }
+
+    @Test
+    void canInsertConcurrently() throws InterruptedException {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        IntStream.range(0, 1_000).forEach(i -> executor.submit(() ->
+                underTest.insertCustomer(new Customer(
+                        "Customer " + i, "customer-" + i + "@gmail.com", "password", 30, Gender.FEMALE
+                ))
+        ));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual).hasSize(1_002);
+        assertThat(actual).extracting(Customer::getId).doesNotHaveDuplicates();
+    }
+}
@@ -3,20 +3,38 @@ package com.amigoscode.customer;
 import com.amigoscode.exception.DuplicateResourceException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.StaleResourceException;
+import com.amigoscode.exception.TooManyRequestsException;
+import com.amigoscode.jwt.PrincipalCache;
 import com.amigoscode.s3.S3Buckets;
 import com.amigoscode.s3.S3Service;
+import com.amigoscode.security.BoundedPasswordEncoder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -31,7 +49,7 @@ class CustomerServiceTest {
     private CustomerDAO customerDAO;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private BoundedPasswordEncoder passwordEncoder;
 
     @Mock
     private S3Service s3Service;
@@ -39,7 +57,17 @@ class CustomerServiceTest {
     @Mock
     private S3Buckets s3Buckets;
 
+    @Mock
+    private PrincipalCache principalCache;
+
+    @Mock
+    private ProfileImageResizer profileImageResizer;
+
+    @Mock
+    private ProfileImageUploadQueue profileImageUploadQueue;
+
     private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+    private final Queue<Runnable> applicationTasks = new ArrayDeque<>();
 
     @BeforeEach
     void setUp() {
@@ -47,7 +75,11 @@ class CustomerServiceTest {
                 customerDTOMapper,
                 passwordEncoder,
                 s3Service,
-                s3Buckets);
+                s3Buckets,
+                principalCache,
+                profileImageResizer,
+                Optional.of(profileImageUploadQueue),
+                applicationTasks::add);
     }
 
 
@@ -60,6 +92,59 @@ class CustomerServiceTest {
         verify(customerDAO).selectAllCustomers();
     }
 
+    @Test
+    void canGetCustomersPageWithNextCursor() {
+        // Given
+        Customer alex = new Customer(3, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer bibi = new Customer(7, "Bibi", "bibi@gmail.com", "password", 21, Gender.MALE);
+        Customer carl = new Customer(9, "Carl", "carl@gmail.com", "password", 23, Gender.MALE);
+        CustomerPageRequest expectedRequest = new CustomerPageRequest(
+                0, 3, Gender.MALE, null, null, null
+        );
+        when(customerDAO.selectCustomers(expectedRequest)).thenReturn(List.of(alex, bibi, carl));
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(
+                new CustomerPageRequest(null, 2, Gender.MALE, null, null, " ")
+        );
+
+        // Then
+        assertThat(actual.customers()).containsExactly(
+                customerDTOMapper.apply(alex),
+                customerDTOMapper.apply(bibi)
+        );
+        assertThat(actual.next()).isEqualTo(bibi.getId());
+    }
+
+    @Test
+    void lastCustomersPageHasNoNextCursor() {
+        // Given
+        Customer alex = new Customer(3, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(customerDAO.selectCustomers(new CustomerPageRequest(
+                3, 21, null, null, null, null
+        ))).thenReturn(List.of(alex));
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(
+                new CustomerPageRequest(3, null, null, null, null, null)
+        );
+
+        // Then
+        assertThat(actual.customers()).containsExactly(customerDTOMapper.apply(alex));
+        assertThat(actual.next()).isNull();
+    }
+
+    @Test
+    void willThrowWhenCustomersPageLimitIsOutOfRange() {
+        assertThatThrownBy(() -> underTest.getCustomersPage(
+                new CustomerPageRequest(null, 101, null, null, null, null)
+        ))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 100");
+
+        verifyNoInteractions(customerDAO);
+    }
+
     @Test
     void canGetCustomer() {
         // Given
@@ -78,6 +163,51 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(expcted);
     }
 
+    @Test
+    void canGetCustomersByIdsInRequestedOrder() {
+        // Given
+        Customer alex = new Customer(3, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer bibi = new Customer(7, "Bibi", "bibi@gmail.com", "password", 21, Gender.FEMALE);
+        when(customerDAO.selectCustomersByIds(Set.of(7, 5, 3))).thenReturn(List.of(alex, bibi));
+
+        // When
+        CustomerLookupResult actual = underTest.getCustomersByIds(
+                new CustomerLookupRequest(List.of(7, 5, 3, 7))
+        );
+
+        // Then
+        assertThat(actual.customers()).containsExactly(
+                customerDTOMapper.apply(bibi),
+                customerDTOMapper.apply(alex)
+        );
+        assertThat(actual.missingIds()).containsExactly(5);
+    }
+
+    @Test
+    void willThrowWhenLookupIdsAreEmpty() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(new CustomerLookupRequest(List.of())))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("ids must not be empty");
+
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void willThrowWhenLookupHasTooManyIds() {
+        // Given
+        List<Integer> ids = IntStream.rangeClosed(1, 501).boxed().toList();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(new CustomerLookupRequest(ids)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("cannot look up more than 500 customers at once");
+
+        verifyNoInteractions(customerDAO);
+    }
+
     @Test
     void willThrowGetCustomerReturnEmptyOptional() {
         // Given
@@ -96,8 +226,6 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(false);
-
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password", 19, Gender.MALE
         );
@@ -121,19 +249,18 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
         assertThat(capturedCustomer.getGender()).isEqualTo(request.gender());
         assertThat(capturedCustomer.getPassword()).isEqualTo(passwordHash);
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
     }
 
     @Test
     void willThrowWhenEmailExistsWhileAddingACustomer() {
         // Given
         String email = "alex@gmail.com";
-
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(true);
-
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password", 19, Gender.MALE
         );
-
+        doThrow(new DuplicateKeyException("customer_email_unique"))
+                .when(customerDAO).insertCustomer(any());
 
         // When
         assertThatThrownBy(() -> underTest.addCustomer(request))
@@ -141,19 +268,112 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
 
         // Then
-        verify(customerDAO, never()).insertCustomer(any());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
+    }
+
+    @Test
+    void addCustomersReportsResultPerRow() {
+        // Given
+        CustomerRegistrationRequest alex = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password", 19, Gender.MALE
+        );
+        CustomerRegistrationRequest taken = new CustomerRegistrationRequest(
+                "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE
+        );
+        CustomerRegistrationRequest invalid = new CustomerRegistrationRequest(
+                "Bibi", "bibi@gmail.com", null, 21, Gender.FEMALE
+        );
+        CustomerRegistrationRequest repeated = new CustomerRegistrationRequest(
+                "Alex Again", "alex@gmail.com", "password", 20, Gender.MALE
+        );
+        when(customerDAO.selectExistingEmails(Set.of(alex.email(), taken.email())))
+                .thenReturn(List.of(taken.email()));
+        when(passwordEncoder.encodeAll(List.of(alex.password()))).thenReturn(List.of("hash"));
+        when(customerDAO.insertCustomers(any())).thenReturn(List.of(alex.email()));
+
+        // When
+        List<CustomerRegistrationResult> results =
+                underTest.addCustomers(List.of(alex, taken, invalid, repeated));
+
+        // Then
+        assertThat(results)
+                .extracting(CustomerRegistrationResult::status)
+                .containsExactly(
+                        CustomerRegistrationResult.Status.CREATED,
+                        CustomerRegistrationResult.Status.DUPLICATE,
+                        CustomerRegistrationResult.Status.INVALID,
+                        CustomerRegistrationResult.Status.DUPLICATE
+                );
+
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDAO).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue())
+                .singleElement()
+                .satisfies(customer -> {
+                    assertThat(customer.getEmail()).isEqualTo(alex.email());
+                    assertThat(customer.getPassword()).isEqualTo("hash");
+                });
+    }
+
+    @Test
+    void addCustomersReportsEmailsTakenSinceTheCheckAsDuplicate() {
+        // Given
+        CustomerRegistrationRequest alex = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password", 19, Gender.MALE
+        );
+        CustomerRegistrationRequest jamila = new CustomerRegistrationRequest(
+                "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE
+        );
+        when(customerDAO.selectExistingEmails(Set.of(alex.email(), jamila.email())))
+                .thenReturn(List.of());
+        when(passwordEncoder.encodeAll(List.of(alex.password(), jamila.password())))
+                .thenReturn(List.of("hash", "hash"));
+        when(customerDAO.insertCustomers(any())).thenReturn(List.of(jamila.email()));
+
+        // When
+        List<CustomerRegistrationResult> results = underTest.addCustomers(List.of(alex, jamila));
+
+        // Then
+        assertThat(results).containsExactly(
+                new CustomerRegistrationResult(
+                        0, alex.email(), CustomerRegistrationResult.Status.DUPLICATE, "email already taken"
+                ),
+                new CustomerRegistrationResult(
+                        1, jamila.email(), CustomerRegistrationResult.Status.CREATED, null
+                )
+        );
+    }
+
+    @Test
+    void willThrowWhenTooManyCustomersAreRegisteredAtOnce() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password", 19, Gender.MALE
+        );
+
+        // When
+        assertThatThrownBy(() -> underTest.addCustomers(Collections.nCopies(10_001, request)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at most 10000 customers can be registered at once");
+
+        // Then
+        verifyNoInteractions(customerDAO);
     }
 
     @Test
     void deleteCustomerById() {
         // Given
         int id = 10;
+        Customer customer = new Customer(
+                id, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
+        );
 
-        when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         underTest.deleteCustomerById(id);
 
         verify(customerDAO).deleteCustomerById(id);
+        verify(principalCache).invalidate(customer.getUsername());
     }
 
     @Test
@@ -161,13 +381,14 @@ class CustomerServiceTest {
         // Given
         int id = 10;
 
-        when(customerDAO.existsCustomerWithId(id)).thenReturn(false);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> underTest.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with id [%s] not found".formatted(id));
 
         verify(customerDAO, never()).deleteCustomerById(id);
+        verifyNoInteractions(principalCache);
     }
 
     @Test
@@ -177,9 +398,9 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(customer));
 
-        CustomerUpdateRequest request = new CustomerUpdateRequest("Bibi", null, null, null);
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Bibi", null, null, null, null);
 
         // When
         underTest.updateCustomer(id, request);
@@ -192,9 +413,11 @@ class CustomerServiceTest {
 
         assertThat(capturedCustomer.getId()).isEqualTo(customer.getId());
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getGender()).isNull();
+
+        verify(principalCache).invalidate(customer.getUsername());
     }
 
     @Test
@@ -204,10 +427,9 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(customer));
 
-        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "foo@gmail.com", null, null);
-        when(customerDAO.existsCustomerWithEmail(request.email())).thenReturn(false);
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "foo@gmail.com", null, null, null);
         // When
         underTest.updateCustomer(id, request);
 
@@ -218,10 +440,11 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isEqualTo(customer.getId());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getName()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getGender()).isNull();
+        verify(principalCache).invalidateIf(any());
     }
 
     @Test
@@ -231,9 +454,9 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(customer));
 
-        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, 25, null);
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, 25, null, null);
 
         // When
         underTest.updateCustomer(id, request);
@@ -245,10 +468,10 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isEqualTo(customer.getId());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
-        assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        assertThat(capturedCustomer.getGender()).isEqualTo(request.gender());
     }
 
     @Test
@@ -258,9 +481,9 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(customer));
 
-        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, null, Gender.FEMALE);
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, null, Gender.FEMALE, null);
 
         // When
         underTest.updateCustomer(id, request);
@@ -272,9 +495,9 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isEqualTo(customer.getId());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
         assertThat(capturedCustomer.getGender()).isEqualTo(request.gender());
     }
 
@@ -285,10 +508,9 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(customer));
 
-        CustomerUpdateRequest request = new CustomerUpdateRequest("Foo", "foo@gmail.com", 25, Gender.FEMALE);
-        when(customerDAO.existsCustomerWithEmail(request.email())).thenReturn(false);
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Foo", "foo@gmail.com", 25, Gender.FEMALE, null);
         // When
         underTest.updateCustomer(id, request);
 
@@ -302,7 +524,27 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
-        assertThat(capturedCustomer.getGender()).isEqualTo(customer.getGender());
+        assertThat(capturedCustomer.getGender()).isEqualTo(request.gender());
+    }
+
+    @Test
+    void willThrowWhenCustomerWasModifiedConcurrently() {
+        // Given
+        int id = 10;
+        when(customerDAO.updateCustomer(any()))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Bibi", null, null, null, 3);
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with id [%s] was modified concurrently".formatted(id));
+
+        // Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        assertThat(customerArgumentCaptor.getValue().getVersion()).isEqualTo(3);
     }
 
     @Test
@@ -312,10 +554,10 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
         );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.empty());
 
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                customer.getName(), customer.getEmail(), customer.getAge(), customer.getGender());
+                customer.getName(), customer.getEmail(), customer.getAge(), customer.getGender(), null);
 
         // When
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
@@ -323,20 +565,16 @@ class CustomerServiceTest {
                 .hasMessage("no data changes found");
 
         // Then
-        verify(customerDAO, never()).updateCustomer(any());
+        verify(principalCache, never()).invalidate(any());
     }
 
     @Test
     void willThrowThenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
         // Given
         int id = 10;
-        Customer customer = new Customer(
-                10, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
-        );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "foo@gmail.com", null, null);
-        when(customerDAO.existsCustomerWithEmail(request.email())).thenReturn(true);
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "foo@gmail.com", null, null, null);
+        when(customerDAO.updateCustomer(any()))
+                .thenThrow(new DuplicateKeyException("customer_email_unique"));
 
         // When
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
@@ -344,11 +582,28 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
 
         // Then
-        verify(customerDAO, never()).updateCustomer(any());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
+        verify(principalCache, never()).invalidate(any());
+    }
+
+    @Test
+    void willThrowWhenUpdatingACustomerThatDoesNotExist() {
+        // Given
+        int id = 10;
+        when(customerDAO.updateCustomer(any()))
+                .thenThrow(new EmptyResultDataAccessException(1));
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Bibi", null, null, null, null);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+        verify(customerDAO, never()).selectCustomerById(any());
     }
 
     @Test
-    void canUploadProfileImage() {
+    void canUploadProfileImage() throws Exception {
         int id = 10;
         when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
 
@@ -357,24 +612,80 @@ class CustomerServiceTest {
 
         String bucket = "customer-bucket";
         when(s3Buckets.getCustomer()).thenReturn(bucket);
+        when(s3Service.putObjectAsync(eq(bucket), any(), any(), eq((long) bytes.length)))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
-        underTest.uploadCustomerProfileImage(id, multipartFile);
+        CompletableFuture<Void> actual = underTest.uploadCustomerProfileImage(id, multipartFile);
+        // the follow-up waits for the application executor
+        verify(customerDAO, never()).updateCustomerProfileImage(any(), any());
+        applicationTasks.forEach(Runnable::run);
+        actual.get();
         ArgumentCaptor<String> profileImageIdCapture =
                 ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<InputStream> contentCapture =
+                ArgumentCaptor.forClass(InputStream.class);
 
         verify(customerDAO).updateCustomerProfileImage(
                 profileImageIdCapture.capture(),
                 eq(id)
         );
+        verify(s3Service).putObjectAsync(
+                eq(bucket),
+                eq("profile-images/%s/%s".formatted(id, profileImageIdCapture.getValue())),
+                contentCapture.capture(),
+                eq((long) bytes.length)
+        );
+        assertThat(contentCapture.getValue().readAllBytes()).isEqualTo(bytes);
+        verify(profileImageResizer).resizeAsync(id, profileImageIdCapture.getValue());
+    }
 
-        verify(s3Service).putObejct(
-                bucket,
-                "profile-images/%s/%s".formatted(
-                        id,
-                        profileImageIdCapture.getValue()
-                ),
-                bytes
+    @Test
+    void willNotUpdateProfileImageIdWhenUploadFails() {
+        int id = 10;
+        when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
+        when(s3Buckets.getCustomer()).thenReturn("customer-bucket");
+        when(s3Service.putObjectAsync(any(), any(), any(), anyLong()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new TooManyRequestsException("too many S3 requests in flight, try again later")
+                ));
+
+        CompletableFuture<Void> actual = underTest.uploadCustomerProfileImage(
+                id,
+                new MockMultipartFile("file", "Hello world".getBytes())
         );
+
+        assertThatThrownBy(actual::get)
+                .hasCauseInstanceOf(TooManyRequestsException.class);
+        verify(customerDAO, never()).updateCustomerProfileImage(any(), any());
+        verifyNoInteractions(profileImageResizer);
+    }
+
+    @Test
+    void canStageProfileImage() {
+        int id = 10;
+        when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
+        byte[] bytes = "Hello world".getBytes();
+
+        MockMultipartFile file = new MockMultipartFile("file", bytes);
+        underTest.stageCustomerProfileImage(id, file);
+
+        verify(profileImageUploadQueue).enqueue(eq(id), any(), eq(file));
+        verify(customerDAO, never()).updateCustomerProfileImage(any(), any());
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void cannotStageProfileImageWhenCustomerDoesNotExists() {
+        int customerId = 10;
+        when(customerDAO.existsCustomerWithId(customerId)).thenReturn(false);
+
+        assertThatThrownBy(() ->
+                underTest.stageCustomerProfileImage(customerId, mock(MultipartFile.class))
+        )
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(customerId));
+
+        verifyNoInteractions(profileImageUploadQueue);
     }
 
     @Test
@@ -401,11 +712,7 @@ class CustomerServiceTest {
         when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
 
         MultipartFile multipartFile = mock(MultipartFile.class);
-        when(multipartFile.getBytes()).thenThrow(IOException.class);
-
-        String bucket = "customer-bucket";
-        when(s3Buckets.getCustomer()).thenReturn(bucket);
-
+        when(multipartFile.getInputStream()).thenThrow(IOException.class);
 
         assertThatThrownBy(() -> {
             underTest.uploadCustomerProfileImage(id, multipartFile);
@@ -417,7 +724,7 @@ class CustomerServiceTest {
     }
 
     @Test
-    void canDownloadProfileImage() {
+    void canGetProfileImageId() {
         int customerId = 10;
         String profileImageId = "22222";
         Customer customer = new Customer(
@@ -431,21 +738,107 @@ class CustomerServiceTest {
         );
         when(customerDAO.selectCustomerById(customerId)).thenReturn(Optional.of(customer));
 
+        String actual = underTest.getCustomerProfileImageId(customerId);
+
+        assertThat(actual).isEqualTo(profileImageId);
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void canDownloadProfileImage() throws IOException {
+        int customerId = 10;
+        String profileImageId = "22222";
         String bucket = "customer-bucket";
         when(s3Buckets.getCustomer()).thenReturn(bucket);
 
         byte[] expectedImage = "image".getBytes();
-        when(s3Service.getObject(
+        when(s3Service.getObjectStream(
                 bucket,
                 "profile-images/%s/%s".formatted(
                         customerId,
                         profileImageId
 
-                ))).thenReturn(expectedImage);
+                ))).thenReturn(new ResponseInputStream<>(
+                        GetObjectResponse.builder()
+                                .contentLength((long) expectedImage.length)
+                                .build(),
+                        new ByteArrayInputStream(expectedImage)
+                ));
+
+        CustomerProfileImage actualImage = underTest.getCustomerProfileImage(customerId, profileImageId, null);
 
-        byte[] actualImage = underTest.getCustomerProfileImage(customerId);
+        assertThat(actualImage.contentLength()).isEqualTo(expectedImage.length);
+        assertThat(actualImage.size()).isNull();
+        assertThat(actualImage.content().readAllBytes()).isEqualTo(expectedImage);
+        verifyNoInteractions(customerDAO);
+    }
 
-        assertThat(actualImage).isEqualTo(expectedImage);
+    @Test
+    void canDownloadResizedProfileImage() throws IOException {
+        int customerId = 10;
+        String profileImageId = "22222";
+        String bucket = "customer-bucket";
+        when(s3Buckets.getCustomer()).thenReturn(bucket);
+
+        byte[] expectedImage = "small image".getBytes();
+        when(s3Service.getObjectStream(
+                bucket,
+                "profile-images/%s/%s_small".formatted(customerId, profileImageId)
+        )).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder()
+                        .contentLength((long) expectedImage.length)
+                        .build(),
+                new ByteArrayInputStream(expectedImage)
+        ));
+
+        CustomerProfileImage actualImage = underTest.getCustomerProfileImage(
+                customerId, profileImageId, ProfileImageSize.SMALL
+        );
+
+        assertThat(actualImage.size()).isEqualTo(ProfileImageSize.SMALL);
+        assertThat(actualImage.content().readAllBytes()).isEqualTo(expectedImage);
+    }
+
+    @Test
+    void willFallBackToOriginalWhenResizedProfileImageIsNotReady() throws IOException {
+        int customerId = 10;
+        String profileImageId = "22222";
+        String bucket = "customer-bucket";
+        when(s3Buckets.getCustomer()).thenReturn(bucket);
+
+        when(s3Service.getObjectStream(
+                bucket,
+                "profile-images/%s/%s_small".formatted(customerId, profileImageId)
+        )).thenThrow(NoSuchKeyException.builder().build());
+        byte[] expectedImage = "image".getBytes();
+        when(s3Service.getObjectStream(
+                bucket,
+                "profile-images/%s/%s".formatted(customerId, profileImageId)
+        )).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder()
+                        .contentLength((long) expectedImage.length)
+                        .build(),
+                new ByteArrayInputStream(expectedImage)
+        ));
+
+        CustomerProfileImage actualImage = underTest.getCustomerProfileImage(
+                customerId, profileImageId, ProfileImageSize.SMALL
+        );
+
+        assertThat(actualImage.size()).isNull();
+        assertThat(actualImage.content().readAllBytes()).isEqualTo(expectedImage);
+    }
+
+    @Test
+    void cannotDownloadWhenProfileImageIsMissingFromBucket() {
+        int customerId = 10;
+        when(s3Buckets.getCustomer()).thenReturn("customer-bucket");
+        when(s3Service.getObjectStream(any(), any()))
+                .thenThrow(NoSuchKeyException.builder().build());
+
+        assertThatThrownBy(() -> underTest.getCustomerProfileImage(customerId, "22222", null))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] profile image not found".formatted(customerId));
     }
 
     @Test
@@ -461,7 +854,7 @@ class CustomerServiceTest {
         );
         when(customerDAO.selectCustomerById(customerId)).thenReturn(Optional.of(customer));
 
-        assertThatThrownBy(() -> underTest.getCustomerProfileImage(customerId))
+        assertThatThrownBy(() -> underTest.getCustomerProfileImageId(customerId))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with id [%s] profile image not found".formatted(customerId));
 
@@ -474,7 +867,7 @@ class CustomerServiceTest {
         int customerId = 10;
         when(customerDAO.selectCustomerById(customerId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> underTest.getCustomerProfileImage(customerId))
+        assertThatThrownBy(() -> underTest.getCustomerProfileImageId(customerId))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with id [%s] not found".formatted(customerId));
 
@@ -0,0 +1,42 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostgresCustomerCacheInvalidationChannelTest extends AbstractTestcontainers {
+
+    private PostgresCustomerCacheInvalidationChannel underTest;
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        underTest = new PostgresCustomerCacheInvalidationChannel(getJdbcTemplate().getDataSource());
+        underTest.subscribe(id -> received.add(String.valueOf(id)));
+        // the listener announces a full invalidation once it is listening
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("null");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        underTest.destroy();
+    }
+
+    @Test
+    void canPublishAndReceiveInvalidations() throws InterruptedException {
+        // When
+        underTest.publish(42);
+        underTest.publish(null);
+
+        // Then
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("42");
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("null");
+    }
+}
@@ -0,0 +1,142 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileImageGarbageCollectorTest {
+
+    private static final String BUCKET = "customer-bucket";
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(2));
+
+    @Mock
+    private S3Service s3Service;
+    @Mock
+    private S3Buckets s3Buckets;
+    @Mock
+    private CustomerDAO customerDAO;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        when(s3Buckets.getCustomer()).thenReturn(BUCKET);
+    }
+
+    @Test
+    void deletesImagesNoCustomerPointsAt() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", "password", 21, Gender.MALE);
+        alex.setProfileImageId("current");
+        when(s3Service.listObjects(BUCKET, "profile-images/", null, 1000))
+                .thenReturn(page(null,
+                        object("profile-images/1/current", OLD),
+                        object("profile-images/1/current_small", OLD),
+                        object("profile-images/1/previous", OLD),
+                        object("profile-images/1/previous_small", OLD),
+                        object("profile-images/1/uploading", Instant.now()),
+                        object("profile-images/2/deleted-customer", OLD),
+                        object("profile-images/unknown", OLD)
+                ));
+        when(customerDAO.selectCustomersByIds(any())).thenReturn(List.of(alex));
+        when(s3Service.deleteObjects(eq(BUCKET), anyList())).thenReturn(List.of());
+
+        // When
+        var actual = collector(false).collect();
+
+        // Then
+        assertThat(actual).isEqualTo(new ProfileImageGarbageCollector.Result(7, 3, 3));
+        verify(s3Service).deleteObjects(BUCKET, List.of(
+                "profile-images/1/previous",
+                "profile-images/1/previous_small",
+                "profile-images/2/deleted-customer"
+        ));
+        assertThat(meterRegistry.get("profile.image.gc.deleted").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void dryRunDeletesNothing() {
+        // Given
+        when(s3Service.listObjects(BUCKET, "profile-images/", null, 1000))
+                .thenReturn(page(null, object("profile-images/2/deleted-customer", OLD)));
+        when(customerDAO.selectCustomersByIds(any())).thenReturn(List.of());
+
+        // When
+        var actual = collector(true).collect();
+
+        // Then
+        assertThat(actual).isEqualTo(new ProfileImageGarbageCollector.Result(1, 1, 0));
+        verify(s3Service, never()).deleteObjects(any(), anyList());
+    }
+
+    @Test
+    void followsContinuationTokensAndDeletesInBatchesOfAThousand() {
+        // Given
+        S3Object[] first = IntStream.range(0, 1000)
+                .mapToObj(i -> object("profile-images/2/%04d".formatted(i), OLD))
+                .toArray(S3Object[]::new);
+        when(s3Service.listObjects(eq(BUCKET), eq("profile-images/"), isNull(), anyInt()))
+                .thenReturn(page("next", first));
+        when(s3Service.listObjects(eq(BUCKET), eq("profile-images/"), eq("next"), anyInt()))
+                .thenReturn(page(null, object("profile-images/3/last", OLD)));
+        when(customerDAO.selectCustomersByIds(any())).thenReturn(List.of());
+        when(s3Service.deleteObjects(eq(BUCKET), anyList())).thenReturn(List.of());
+
+        // When
+        var actual = collector(false).collect();
+
+        // Then
+        assertThat(actual).isEqualTo(new ProfileImageGarbageCollector.Result(1001, 1001, 1001));
+        verify(s3Service).deleteObjects(eq(BUCKET), argThat(keys -> keys.size() == 1000));
+        verify(s3Service).deleteObjects(BUCKET, List.of("profile-images/3/last"));
+    }
+
+    private ProfileImageGarbageCollector collector(boolean dryRun) {
+        return new ProfileImageGarbageCollector(
+                s3Service,
+                s3Buckets,
+                customerDAO,
+                true,
+                dryRun,
+                Duration.ofHours(24),
+                1000,
+                0,
+                meterRegistry
+        );
+    }
+
+    private static ListObjectsV2Response page(String nextContinuationToken, S3Object... objects) {
+        return ListObjectsV2Response.builder()
+                .contents(objects)
+                .isTruncated(nextContinuationToken != null)
+                .nextContinuationToken(nextContinuationToken)
+                .build();
+    }
+
+    private static S3Object object(String key, Instant lastModified) {
+        return S3Object.builder()
+                .key(key)
+                .lastModified(lastModified)
+                .build();
+    }
+}
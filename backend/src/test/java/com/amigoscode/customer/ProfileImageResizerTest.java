@@ -0,0 +1,152 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileImageResizerTest {
+
+    @Mock
+    private S3Service s3Service;
+    @Mock
+    private S3Buckets s3Buckets;
+    private ProfileImageResizer underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ProfileImageResizer(s3Service, s3Buckets, 1, 1, 10_000_000, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void canResizeToEverySize() throws IOException {
+        // Given
+        String bucket = "customer-bucket";
+        when(s3Buckets.getCustomer()).thenReturn(bucket);
+        byte[] original = png(1024, 512);
+        when(s3Service.getObjectStreamUncached(bucket, "profile-images/1/22222"))
+                .thenReturn(new ResponseInputStream<>(
+                        GetObjectResponse.builder().build(),
+                        new ByteArrayInputStream(original)
+                ));
+
+        // When
+        underTest.resize(1, "22222");
+
+        // Then
+        for (ProfileImageSize size : ProfileImageSize.values()) {
+            ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+            verify(s3Service).putObejct(
+                    eq(bucket),
+                    eq("profile-images/1/22222_%s".formatted(size.getValue())),
+                    bytesCaptor.capture()
+            );
+            BufferedImage resized = ImageIO.read(new ByteArrayInputStream(bytesCaptor.getValue()));
+            assertThat(resized.getWidth()).isEqualTo(size.getPixels());
+            assertThat(resized.getHeight()).isEqualTo(size.getPixels() / 2);
+        }
+    }
+
+    @Test
+    void largeOriginalsAreSubsampledWhileDecoding() throws IOException {
+        // Given
+        String bucket = "customer-bucket";
+        when(s3Buckets.getCustomer()).thenReturn(bucket);
+        byte[] original = png(4096, 2048);
+        when(s3Service.getObjectStreamUncached(bucket, "profile-images/1/22222"))
+                .thenReturn(new ResponseInputStream<>(
+                        GetObjectResponse.builder().build(),
+                        new ByteArrayInputStream(original)
+                ));
+
+        // When
+        underTest.resize(1, "22222");
+
+        // Then
+        assertThat(ProfileImageResizer.subsampling(4096, 2048)).isEqualTo(4);
+        ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(s3Service).putObejct(eq(bucket), eq("profile-images/1/22222_large"), bytesCaptor.capture());
+        BufferedImage resized = ImageIO.read(new ByteArrayInputStream(bytesCaptor.getValue()));
+        assertThat(resized.getWidth()).isEqualTo(512);
+        assertThat(resized.getHeight()).isEqualTo(256);
+    }
+
+    @Test
+    void willSkipImagesOverThePixelLimit() throws IOException {
+        // Given
+        ProfileImageResizer limited = new ProfileImageResizer(s3Service, s3Buckets, 1, 1, 1_000, false);
+        when(s3Buckets.getCustomer()).thenReturn("customer-bucket");
+        when(s3Service.getObjectStreamUncached(any(), any()))
+                .thenReturn(new ResponseInputStream<>(
+                        GetObjectResponse.builder().build(),
+                        new ByteArrayInputStream(png(64, 64))
+                ));
+
+        // When
+        limited.resize(1, "22222");
+        limited.destroy();
+
+        // Then
+        verify(s3Service, never()).putObejct(any(), any(), any());
+    }
+
+    @Test
+    void willNotUpscaleSmallImages() {
+        // Given
+        BufferedImage original = new BufferedImage(32, 16, BufferedImage.TYPE_INT_RGB);
+
+        // When
+        BufferedImage actual = ProfileImageResizer.scale(original, ProfileImageSize.LARGE.getPixels());
+
+        // Then
+        assertThat(actual.getWidth()).isEqualTo(32);
+        assertThat(actual.getHeight()).isEqualTo(16);
+    }
+
+    @Test
+    void willSkipUnreadableImages() {
+        // Given
+        when(s3Buckets.getCustomer()).thenReturn("customer-bucket");
+        when(s3Service.getObjectStreamUncached(any(), any()))
+                .thenReturn(new ResponseInputStream<>(
+                        GetObjectResponse.builder().build(),
+                        new ByteArrayInputStream("not an image".getBytes())
+                ));
+
+        // When
+        underTest.resize(1, "22222");
+
+        // Then
+        verify(s3Service, never()).putObejct(any(), any(), any());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
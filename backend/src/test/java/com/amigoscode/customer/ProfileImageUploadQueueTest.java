@@ -0,0 +1,176 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.TooManyRequestsException;
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileImageUploadQueueTest {
+
+    private static final String BUCKET = "customer-bucket";
+
+    @Mock
+    private S3Service s3Service;
+    @Mock
+    private S3Buckets s3Buckets;
+    @Mock
+    private CustomerDAO customerDAO;
+    @Mock
+    private ProfileImageResizer profileImageResizer;
+    @TempDir
+    private Path stagingDirectory;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProfileImageUploadQueue underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.destroy();
+        }
+    }
+
+    @Test
+    void canUploadStagedImageThenSetProfileImageId() throws Exception {
+        // Given
+        when(s3Buckets.getCustomer()).thenReturn(BUCKET);
+        underTest = queue(10, 3);
+
+        // When
+        underTest.enqueue(1, "abc", image());
+
+        // Then
+        awaitNoPendingUploads();
+        verify(s3Service).putObject(eq(BUCKET), eq("profile-images/1/abc"), any(), eq(5L));
+        verify(customerDAO).updateCustomerProfileImage("abc", 1);
+        verify(profileImageResizer).resizeAsync(1, "abc");
+        assertThat(stagingDirectory.resolve("1_abc")).doesNotExist();
+        assertThat(meterRegistry.get("profile.image.uploads.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void willRetryFailedUpload() throws Exception {
+        // Given
+        when(s3Buckets.getCustomer()).thenReturn(BUCKET);
+        doThrow(SdkClientException.create("S3 is down"))
+                .doNothing()
+                .when(s3Service).putObject(any(), any(), any(), anyLong());
+        underTest = queue(10, 3);
+
+        // When
+        underTest.enqueue(1, "abc", image());
+
+        // Then
+        awaitNoPendingUploads();
+        verify(s3Service, times(2)).putObject(eq(BUCKET), eq("profile-images/1/abc"), any(), eq(5L));
+        verify(customerDAO).updateCustomerProfileImage("abc", 1);
+    }
+
+    @Test
+    void willMoveUploadAsideAfterLastAttempt() throws Exception {
+        // Given
+        when(s3Buckets.getCustomer()).thenReturn(BUCKET);
+        doThrow(SdkClientException.create("S3 is down"))
+                .when(s3Service).putObject(any(), any(), any(), anyLong());
+        underTest = queue(10, 2);
+
+        // When
+        underTest.enqueue(1, "abc", image());
+
+        // Then
+        awaitNoPendingUploads();
+        verify(s3Service, times(2)).putObject(any(), any(), any(), anyLong());
+        verifyNoInteractions(customerDAO);
+        assertThat(stagingDirectory.resolve("failed").resolve("1_abc")).exists();
+        assertThat(meterRegistry.get("profile.image.uploads.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void canResumeStagedUploadsAndOnlyTheLatestWins() throws Exception {
+        // Given
+        when(s3Buckets.getCustomer()).thenReturn(BUCKET);
+        Path older = Files.write(stagingDirectory.resolve("7_old"), "old".getBytes());
+        Files.setLastModifiedTime(older, FileTime.from(Instant.now().minusSeconds(60)));
+        Files.write(stagingDirectory.resolve("7_new"), "new".getBytes());
+        Path partial = Files.write(stagingDirectory.resolve("7_crashed.partial"), "cr".getBytes());
+        underTest = queue(10, 3);
+
+        // When
+        underTest.resumePendingUploads();
+
+        // Then
+        awaitNoPendingUploads();
+        verify(s3Service).putObject(eq(BUCKET), eq("profile-images/7/old"), any(), eq(3L));
+        verify(s3Service).putObject(eq(BUCKET), eq("profile-images/7/new"), any(), eq(3L));
+        verify(customerDAO).updateCustomerProfileImage("new", 7);
+        verify(customerDAO, never()).updateCustomerProfileImage("old", 7);
+        assertThat(partial).doesNotExist();
+    }
+
+    @Test
+    void willRejectUploadWhenTooManyArePending() throws IOException {
+        // Given
+        underTest = queue(0, 3);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.enqueue(1, "abc", image()))
+                .isInstanceOf(TooManyRequestsException.class)
+                .hasMessage("too many profile image uploads pending, try again later");
+        try (var files = Files.list(stagingDirectory)) {
+            assertThat(files).containsExactly(stagingDirectory.resolve("failed"));
+        }
+        verifyNoInteractions(s3Service);
+    }
+
+    private ProfileImageUploadQueue queue(int maxPending, int maxAttempts) {
+        return new ProfileImageUploadQueue(
+                s3Service,
+                s3Buckets,
+                customerDAO,
+                profileImageResizer,
+                stagingDirectory,
+                1,
+                maxPending,
+                maxAttempts,
+                Duration.ofMillis(10),
+                Duration.ofMillis(50),
+                false,
+                meterRegistry
+        );
+    }
+
+    private void awaitNoPendingUploads() throws InterruptedException {
+        Instant deadline = Instant.now().plusSeconds(5);
+        while (underTest.pendingUploads() > 0 && Instant.now().isBefore(deadline)) {
+            Thread.sleep(10);
+        }
+        assertThat(underTest.pendingUploads()).isZero();
+    }
+
+    private static MockMultipartFile image() {
+        return new MockMultipartFile("file", "image".getBytes());
+    }
+}
@@ -0,0 +1,161 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.s3.ReactiveS3Service;
+import com.amigoscode.s3.S3Buckets;
+import com.amigoscode.s3.S3ObjectContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private CustomerReactiveDataAccessService customerDAO;
+
+    @Mock
+    private ReactiveS3Service s3Service;
+
+    @Mock
+    private S3Buckets s3Buckets;
+
+    private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(
+                customerDAO,
+                customerDTOMapper,
+                s3Service,
+                s3Buckets
+        );
+    }
+
+    @Test
+    void canGetCustomersPageWithNextCursor() {
+        // Given
+        Customer alex = new Customer(3, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer bibi = new Customer(7, "Bibi", "bibi@gmail.com", "password", 21, Gender.MALE);
+        Customer carl = new Customer(9, "Carl", "carl@gmail.com", "password", 23, Gender.MALE);
+        when(customerDAO.selectCustomers(new CustomerPageRequest(
+                0, 3, Gender.MALE, null, null, null
+        ))).thenReturn(Flux.just(alex, bibi, carl));
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(
+                new CustomerPageRequest(null, 2, Gender.MALE, null, null, " ")
+        ).block();
+
+        // Then
+        assertThat(actual.customers()).containsExactly(
+                customerDTOMapper.apply(alex),
+                customerDTOMapper.apply(bibi)
+        );
+        assertThat(actual.next()).isEqualTo(bibi.getId());
+    }
+
+    @Test
+    void willThrowWhenCustomersPageLimitIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersPage(
+                new CustomerPageRequest(null, 101, null, null, null, null)
+        ).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 100");
+
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void willThrowWhenGetCustomerReturnEmpty() {
+        // Given
+        int id = 10;
+        when(customerDAO.selectCustomerById(id)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomer(id).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+    }
+
+    @Test
+    void cannotGetProfileImageIdWhenCustomerHasNone() {
+        // Given
+        int customerId = 10;
+        Customer customer = new Customer(
+                customerId, "Alex", "alex@gmail.com", "password", 19, Gender.MALE
+        );
+        when(customerDAO.selectCustomerById(customerId)).thenReturn(Mono.just(customer));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerProfileImageId(customerId).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] profile image not found".formatted(customerId));
+
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void willFallBackToOriginalWhenResizedProfileImageIsNotReady() {
+        // Given
+        int customerId = 10;
+        String profileImageId = "22222";
+        String bucket = "customer-bucket";
+        when(s3Buckets.getCustomer()).thenReturn(bucket);
+        when(s3Service.getObject(
+                bucket,
+                "profile-images/%s/%s_small".formatted(customerId, profileImageId)
+        )).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+        byte[] expectedImage = "image".getBytes();
+        when(s3Service.getObject(
+                bucket,
+                "profile-images/%s/%s".formatted(customerId, profileImageId)
+        )).thenReturn(Mono.just(new S3ObjectContent(
+                Flux.just(ByteBuffer.wrap(expectedImage)),
+                (long) expectedImage.length
+        )));
+
+        // When
+        CustomerProfileImageContent actual = underTest.getCustomerProfileImage(
+                customerId, profileImageId, ProfileImageSize.SMALL
+        ).block();
+
+        // Then
+        assertThat(actual.size()).isNull();
+        assertThat(actual.contentLength()).isEqualTo(expectedImage.length);
+        assertThat(actual.content().blockFirst()).isEqualTo(ByteBuffer.wrap(expectedImage));
+    }
+
+    @Test
+    void cannotDownloadWhenProfileImageIsMissingFromBucket() {
+        // Given
+        int customerId = 10;
+        when(s3Buckets.getCustomer()).thenReturn("customer-bucket");
+        when(s3Service.getObject(any(), any()))
+                .thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerProfileImage(customerId, "22222", null).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] profile image not found".formatted(customerId));
+    }
+}
@@ -2,6 +2,7 @@ package com.amigoscode.journey;
 
 import com.amigoscode.auth.AuthenticationRequest;
 import com.amigoscode.auth.AuthenticationResponse;
+import com.amigoscode.auth.RefreshTokenRequest;
 import com.amigoscode.customer.CustomerDTO;
 import com.amigoscode.customer.CustomerRegistrationRequest;
 import com.amigoscode.customer.Gender;
@@ -105,5 +106,84 @@ public class AuthenticationIT {
         assertThat(customerDTO.age()).isEqualTo(age);
         assertThat(customerDTO.gender()).isEqualTo(gender);
         assertThat(customerDTO.roles()).isEqualTo(List.of("ROLE_USER"));
+
+        // a refresh token is exchanged once, without the password
+        RefreshTokenRequest refreshRequest =
+                new RefreshTokenRequest(authenticationResponse.refreshToken());
+
+        AuthenticationResponse refreshed = webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/refresh")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(refreshRequest), RefreshTokenRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(new ParameterizedTypeReference<AuthenticationResponse>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(refreshed.refreshToken()).isNotEqualTo(authenticationResponse.refreshToken());
+        assertThat(jwtUtil.isTokenValid(refreshed.token(), customerDTO.username())).isTrue();
+
+        // replaying the old one revokes the session
+        webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/refresh")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(refreshRequest), RefreshTokenRequest.class)
+                .exchange()
+                .expectStatus()
+                .isUnauthorized();
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(AUTHORIZATION, String.format("Bearer %s", refreshed.token()))
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+    }
+
+    @Test
+    void registrationStartsARefreshableSession() {
+        Faker faker = new Faker();
+        String email = faker.name().lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+        CustomerRegistrationRequest registrationRequest = new CustomerRegistrationRequest(
+                faker.name().firstName(), email, "password", RANDOM.nextInt(1, 100), Gender.FEMALE
+        );
+
+        AuthenticationResponse registered = webTestClient.post()
+                .uri(CUSTOMER_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(registrationRequest), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(new ParameterizedTypeReference<AuthenticationResponse>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(registered.customerDTO().email()).isEqualTo(email);
+        assertThat(registered.refreshToken()).isNotBlank();
+
+        // the access token of a new customer is renewed like one from a login
+        AuthenticationResponse refreshed = webTestClient.post()
+                .uri(AUTHENTICATION_PATH + "/refresh")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new RefreshTokenRequest(registered.refreshToken())), RefreshTokenRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(new ParameterizedTypeReference<AuthenticationResponse>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(jwtUtil.isTokenValid(refreshed.token(), email)).isTrue();
     }
 }
@@ -12,6 +12,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -93,7 +95,8 @@ public class CustomerIntegrationTest {
                 age,
                 List.of("ROLE_USER"),
                 email,
-                null
+                null,
+                0
         );
 
         // make sure that customer is present
@@ -183,7 +186,8 @@ public class CustomerIntegrationTest {
                 age,
                 List.of("ROLE_USER"),
                 email,
-                null
+                null,
+                0
         );
 
         // make sure that customer is present
@@ -263,7 +267,8 @@ public class CustomerIntegrationTest {
                 age,
                 List.of("ROLE_USER"),
                 email,
-                null
+                null,
+                0
         );
 
         // make sure that expeted is present
@@ -272,7 +277,7 @@ public class CustomerIntegrationTest {
         // update expeted by id
         String newName = new Faker().name().firstName();
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                newName, null,null,gender
+                newName, null,null,gender, expectedCustomer.version()
         );
 
         webTestClient.put()
@@ -297,10 +302,26 @@ public class CustomerIntegrationTest {
                 .getResponseBody();
 
         CustomerDTO expeted = new CustomerDTO(
-                id,newName,email, gender, age,List.of("ROLE_USER"),email,null
+                id,newName,email, gender, age,List.of("ROLE_USER"),email,null,1
         );
 
         assertThat(updatedCustomer).isEqualTo(expeted);
+
+        // a second update still based on the version read before the first
+        // one is rejected instead of overwriting it
+        CustomerUpdateRequest staleUpdateRequest = new CustomerUpdateRequest(
+                newName + "x", null, null, gender, expectedCustomer.version()
+        );
+
+        webTestClient.put()
+                .uri(CUSTOMER_PATH + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(staleUpdateRequest), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
     }
 
     @Test
@@ -391,5 +412,27 @@ public class CustomerIntegrationTest {
 
         assertThat(actual).isEqualTo(downloadedImage);
 
+        String eTag = "\"%s\"".formatted(profileImageId);
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "/{customerId}/profile-image", customerDTO.id())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, eTag);
+
+        webTestClient.get()
+                .uri(CUSTOMER_PATH + "/{customerId}/profile-image?v={v}", customerDTO.id(), profileImageId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, eTag)
+                .expectHeader()
+                .value(HttpHeaders.CACHE_CONTROL, cacheControl ->
+                        assertThat(cacheControl).contains("immutable"));
+
     }
 }
@@ -0,0 +1,146 @@
+package com.amigoscode.jwt;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerDAO;
+import com.amigoscode.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JWTAuthenticationFilterTest {
+
+    @Mock
+    private UserDetailsService userDetailsService;
+    @Mock
+    private CustomerDAO customerDAO;
+    private final JWTUtil jwtUtil = new JWTUtil();
+    private JWTAuthenticationFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        underTest = new JWTAuthenticationFilter(
+                jwtUtil,
+                userDetailsService,
+                new PrincipalCache(10, Duration.ofMinutes(1), meterRegistry),
+                new RevokedSessions(jwtUtil, meterRegistry),
+                customerDAO,
+                true
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessModeAuthenticatesFromClaims() throws Exception {
+        // Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(customer(3)));
+        MockHttpServletRequest request = bearer(
+                jwtUtil.issueToken("alex@gmail.com", 1, 3, "session", List.of("ROLE_USER"))
+        );
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        Authentication actual = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(actual.getPrincipal()).isEqualTo("alex@gmail.com");
+        assertThat(actual.getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        verify(userDetailsService, never()).loadUserByUsername(any());
+    }
+
+    @Test
+    void statelessModeRejectsAnOutdatedTokenVersion() throws Exception {
+        // Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(customer(4)));
+        MockHttpServletRequest request = bearer(
+                jwtUtil.issueToken("alex@gmail.com", 1, 3, "session", List.of("ROLE_USER"))
+        );
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void tokensWithoutCustomerClaimsLoadTheUser() throws Exception {
+        // Given
+        Customer customer = customer(0);
+        when(userDetailsService.loadUserByUsername("alex@gmail.com")).thenReturn(customer);
+        MockHttpServletRequest request = bearer(jwtUtil.issueToken("alex@gmail.com", "ROLE_USER"));
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal())
+                .isEqualTo(customer);
+        verify(customerDAO, never()).selectCustomerById(any());
+    }
+
+    @Test
+    void userDetailsPathRejectsAnOutdatedTokenVersion() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JWTAuthenticationFilter databasePath = new JWTAuthenticationFilter(
+                jwtUtil,
+                userDetailsService,
+                new PrincipalCache(10, Duration.ofMinutes(1), meterRegistry),
+                new RevokedSessions(jwtUtil, meterRegistry),
+                customerDAO,
+                false
+        );
+        when(userDetailsService.loadUserByUsername("alex@gmail.com")).thenReturn(customer(4));
+        MockHttpServletRequest request = bearer(
+                jwtUtil.issueToken("alex@gmail.com", 1, 3, "session", List.of("ROLE_USER"))
+        );
+
+        // When
+        databasePath.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(customerDAO, never()).selectCustomerById(any());
+    }
+
+    private static Customer customer(int tokenVersion) {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", "password", 21, Gender.MALE);
+        customer.setTokenVersion(tokenVersion);
+        return customer;
+    }
+
+    private static MockHttpServletRequest bearer(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,91 @@
+package com.amigoscode.jwt;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JWTUtilTest {
+
+    private JWTUtil underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new JWTUtil();
+    }
+
+    @Test
+    void canParseToken() {
+        // Given
+        String token = underTest.issueToken("alex@amigoscode.com", "ROLE_USER");
+
+        // When
+        JWTClaims actual = underTest.parseToken(token);
+
+        // Then
+        assertThat(actual.subject()).isEqualTo("alex@amigoscode.com");
+        assertThat(actual.scopes()).containsExactly("ROLE_USER");
+        assertThat(actual.expiresAt()).isAfter(Instant.now());
+    }
+
+    @Test
+    void parseTokenReusesVerifiedClaims() {
+        // Given
+        String token = underTest.issueToken("alex@amigoscode.com");
+        JWTClaims first = underTest.parseToken(token);
+
+        // When
+        JWTClaims second = underTest.parseToken(token);
+
+        // Then
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void accessTokensCarrySessionAndCustomerAndExpireAfterTheConfiguredTtl() {
+        // Given
+        JWTUtil shortLived = new JWTUtil(Duration.ofMinutes(5));
+        String token = shortLived.issueToken(
+                "alex@amigoscode.com", 1, 2, "session", List.of("ROLE_USER")
+        );
+
+        // When
+        JWTClaims actual = shortLived.parseToken(token);
+
+        // Then
+        assertThat(actual.sessionId()).isEqualTo("session");
+        assertThat(actual.customerId()).isEqualTo(1);
+        assertThat(actual.tokenVersion()).isEqualTo(2);
+        assertThat(actual.scopes()).containsExactly("ROLE_USER");
+        assertThat(actual.expiresAt()).isBefore(Instant.now().plus(Duration.ofMinutes(5).plusSeconds(1)));
+    }
+
+    @Test
+    void willThrowWhenTokenIsTampered() {
+        // Given
+        String token = underTest.issueToken("alex@amigoscode.com");
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.parseToken(tampered))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void isTokenValid() {
+        // Given
+        String token = underTest.issueToken("alex@amigoscode.com");
+
+        // When
+        // Then
+        assertThat(underTest.isTokenValid(token, "alex@amigoscode.com")).isTrue();
+        assertThat(underTest.isTokenValid(token, "jamila@amigoscode.com")).isFalse();
+    }
+}
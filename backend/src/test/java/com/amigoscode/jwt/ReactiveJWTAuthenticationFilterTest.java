@@ -0,0 +1,103 @@
+package com.amigoscode.jwt;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerReactiveDataAccessService;
+import com.amigoscode.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveJWTAuthenticationFilterTest {
+
+    @Mock
+    private CustomerReactiveDataAccessService customerDAO;
+    private final JWTUtil jwtUtil = new JWTUtil();
+    private ReactiveJWTAuthenticationFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveJWTAuthenticationFilter(
+                jwtUtil,
+                new RevokedSessions(jwtUtil, new SimpleMeterRegistry()),
+                customerDAO
+        );
+    }
+
+    @Test
+    void tokensWithoutCustomerIdLoadTheCustomer() {
+        // Given
+        Customer customer = customer(3);
+        when(customerDAO.selectUserByEmail("alex@gmail.com")).thenReturn(Mono.just(customer));
+        String token = jwtUtil.issueToken("alex@gmail.com", Map.of("ver", 3));
+
+        // When
+        var actual = filter(token);
+
+        // Then
+        assertThat(actual.getPrincipal()).isEqualTo(customer);
+    }
+
+    @Test
+    void tokensWithoutCustomerIdAreRejectedOnAnOutdatedTokenVersion() {
+        // Given
+        when(customerDAO.selectUserByEmail("alex@gmail.com")).thenReturn(Mono.just(customer(4)));
+        String token = jwtUtil.issueToken("alex@gmail.com", Map.of("ver", 3));
+
+        // When
+        var actual = filter(token);
+
+        // Then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void claimsPathRejectsAnOutdatedTokenVersion() {
+        // Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(customer(4)));
+        String token = jwtUtil.issueToken("alex@gmail.com", 1, 3, "session", List.of("ROLE_USER"));
+
+        // When
+        var actual = filter(token);
+
+        // Then
+        assertThat(actual).isNull();
+    }
+
+    private Authentication filter(String token) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/v1/customers")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        );
+        AtomicReference<Authentication> authentication = new AtomicReference<>();
+        underTest.filter(exchange, ignored -> ReactiveSecurityContextHolder.getContext()
+                        .map(SecurityContext::getAuthentication)
+                        .doOnNext(authentication::set)
+                        .then())
+                .block();
+        return authentication.get();
+    }
+
+    private static Customer customer(int tokenVersion) {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", "password", 21, Gender.MALE);
+        customer.setTokenVersion(tokenVersion);
+        return customer;
+    }
+}
@@ -0,0 +1,257 @@
+package com.amigoscode.s3;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FakeS3Test {
+
+    private static final String BUCKET = "customer";
+    // md5 of "bytes"
+    private static final String BYTES_ETAG = "\"4b3a6218bb3e3a7303e8a171a60fcf92\"";
+
+    @TempDir
+    private Path root;
+    private FakeS3 underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new FakeS3(root, Duration.ZERO);
+    }
+
+    @Test
+    void putObjectReturnsMd5ETagAndLeavesNoTempFilesBehind() throws Exception {
+        // When
+        var actual = put("profile-images/1/image", "bytes");
+
+        // Then
+        assertThat(actual).isEqualTo(BYTES_ETAG);
+        try (Stream<Path> files = Files.walk(root.resolve(".tmp"))) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void putObjectRejectsContentMd5Mismatch() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.putObject(
+                PutObjectRequest.builder()
+                        .bucket(BUCKET)
+                        .key("image")
+                        .contentMD5(Base64.getEncoder().encodeToString(new byte[16]))
+                        .build(),
+                RequestBody.fromString("bytes")
+        ))
+                .isInstanceOf(S3Exception.class)
+                .satisfies(e -> assertThat(((S3Exception) e).statusCode()).isEqualTo(400));
+        assertThat(root.resolve(BUCKET).resolve("image")).doesNotExist();
+    }
+
+    @Test
+    void headObject() {
+        // Given
+        put("image", "bytes");
+
+        // When
+        var actual = underTest.headObject(HeadObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("image")
+                .build());
+
+        // Then
+        assertThat(actual.contentLength()).isEqualTo(5);
+        assertThat(actual.eTag()).isEqualTo(BYTES_ETAG);
+        assertThat(actual.lastModified()).isNotNull();
+    }
+
+    @Test
+    void headAndGetObjectThrowNoSuchKeyWhenMissing() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.headObject(HeadObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("missing")
+                .build()))
+                .isInstanceOf(NoSuchKeyException.class);
+        assertThatThrownBy(() -> underTest.getObject(GetObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("missing")
+                .build()))
+                .isInstanceOf(NoSuchKeyException.class);
+    }
+
+    @Test
+    void deleteObjectIsIdempotent() {
+        // Given
+        put("image", "bytes");
+
+        // When
+        underTest.deleteObject(DeleteObjectRequest.builder().bucket(BUCKET).key("image").build());
+        underTest.deleteObject(DeleteObjectRequest.builder().bucket(BUCKET).key("image").build());
+
+        // Then
+        assertThatThrownBy(() -> underTest.headObject(HeadObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("image")
+                .build()))
+                .isInstanceOf(NoSuchKeyException.class);
+    }
+
+    @Test
+    void deleteObjects() {
+        // Given
+        put("a", "bytes");
+        put("b", "bytes");
+
+        // When
+        var actual = underTest.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(BUCKET)
+                .delete(Delete.builder()
+                        .objects(
+                                ObjectIdentifier.builder().key("a").build(),
+                                ObjectIdentifier.builder().key("missing").build()
+                        )
+                        .build())
+                .build());
+
+        // Then
+        assertThat(actual.deleted()).hasSize(2);
+        assertThat(keys(list(null, null, 10))).containsExactly("b");
+    }
+
+    @Test
+    void listObjectsV2FiltersByPrefixAndPaginatesInKeyOrder() {
+        // Given
+        IntStream.of(3, 1, 2).forEach(i -> put("profile-images/%s/image".formatted(i), "bytes"));
+        put("other/image", "bytes");
+
+        // When
+        var first = list("profile-images/", null, 2);
+        var second = list("profile-images/", first.nextContinuationToken(), 2);
+
+        // Then
+        assertThat(first.isTruncated()).isTrue();
+        assertThat(keys(first)).containsExactly("profile-images/1/image", "profile-images/2/image");
+        assertThat(first.contents()).allSatisfy(object -> {
+            assertThat(object.size()).isEqualTo(5);
+            assertThat(object.eTag()).isEqualTo(BYTES_ETAG);
+        });
+        assertThat(second.isTruncated()).isFalse();
+        assertThat(keys(second)).containsExactly("profile-images/3/image");
+    }
+
+    @Test
+    void getObjectIsCappedByBandwidth() throws Exception {
+        // Given
+        FakeS3 throttled = new FakeS3(root, Duration.ZERO, 10_000);
+        throttled.putObject(
+                PutObjectRequest.builder().bucket(BUCKET).key("image").build(),
+                RequestBody.fromBytes(new byte[2_000])
+        );
+
+        // When
+        long start = System.nanoTime();
+        try (InputStream content = throttled.getObject(GetObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("image")
+                .build())) {
+            content.readAllBytes();
+        }
+        var actual = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then
+        assertThat(actual).isGreaterThanOrEqualTo(Duration.ofMillis(190));
+    }
+
+    @Test
+    void asyncMultipartUploadIsVisibleToTheSyncClient() throws Exception {
+        // Given
+        FakeS3Async async = new FakeS3Async(root, Duration.ZERO);
+        String uploadId = async.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(BUCKET)
+                .key("image")
+                .build()).get().uploadId();
+        async.uploadPart(
+                UploadPartRequest.builder().bucket(BUCKET).key("image").uploadId(uploadId).partNumber(2).build(),
+                AsyncRequestBody.fromString("tes")
+        ).get();
+        async.uploadPart(
+                UploadPartRequest.builder().bucket(BUCKET).key("image").uploadId(uploadId).partNumber(1).build(),
+                AsyncRequestBody.fromString("by")
+        ).get();
+
+        // When
+        var completed = async.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(BUCKET)
+                .key("image")
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder()
+                        .parts(
+                                CompletedPart.builder().partNumber(1).build(),
+                                CompletedPart.builder().partNumber(2).build()
+                        )
+                        .build())
+                .build()).get();
+
+        // Then
+        assertThat(completed.eTag()).isEqualTo(BYTES_ETAG);
+        assertThat(async.getObject(
+                GetObjectRequest.builder().bucket(BUCKET).key("image").build(),
+                AsyncResponseTransformer.toBytes()
+        ).get().asUtf8String()).isEqualTo("bytes");
+        assertThat(root.resolve(".multipart-uploads").resolve(uploadId)).doesNotExist();
+    }
+
+    private String put(String key, String content) {
+        return underTest.putObject(
+                PutObjectRequest.builder().bucket(BUCKET).key(key).build(),
+                RequestBody.fromString(content)
+        ).eTag();
+    }
+
+    private ListObjectsV2Response list(String prefix, String continuationToken, int maxKeys) {
+        return underTest.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(BUCKET)
+                .prefix(prefix)
+                .continuationToken(continuationToken)
+                .maxKeys(maxKeys)
+                .build());
+    }
+
+    private static List<String> keys(ListObjectsV2Response response) {
+        return response.contents().stream().map(S3Object::key).toList();
+    }
+}
@@ -0,0 +1,98 @@
+package com.amigoscode.s3;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveS3ServiceTest {
+
+    private static final String BUCKET = "customer";
+
+    @TempDir
+    Path root;
+    private ReactiveS3Service underTest;
+
+    @BeforeEach
+    void setUp() {
+        S3ObjectCache objectCache = new S3ObjectCache(
+                DataSize.ofKilobytes(64),
+                DataSize.ofKilobytes(1),
+                false,
+                new SimpleMeterRegistry()
+        );
+        underTest = new ReactiveS3Service(
+                new FakeS3Async(root, Duration.ZERO),
+                objectCache
+        );
+    }
+
+    @Test
+    void canStreamObjectLargerThanTheCacheAccepts() throws IOException {
+        // Given
+        byte[] file = new byte[64 * 1024];
+        new Random().nextBytes(file);
+        writeObject("foo", file);
+
+        // When
+        S3ObjectContent actual = underTest.getObject(BUCKET, "foo").block();
+
+        // Then
+        assertThat(actual.contentLength()).isEqualTo(file.length);
+        assertThat(bytes(actual)).isEqualTo(file);
+    }
+
+    @Test
+    void smallObjectsAreServedFromTheCacheOnceRead() throws IOException {
+        // Given
+        byte[] file = "Hello world".getBytes();
+        writeObject("foo", file);
+        underTest.getObject(BUCKET, "foo").block();
+        Files.delete(root.resolve(BUCKET).resolve("foo"));
+
+        // When
+        S3ObjectContent actual = underTest.getObject(BUCKET, "foo").block();
+
+        // Then
+        assertThat(actual.contentLength()).isEqualTo(file.length);
+        assertThat(bytes(actual)).isEqualTo(file);
+    }
+
+    @Test
+    void getObjectFailsWithNoSuchKeyWhenObjectDoesNotExist() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getObject(BUCKET, "missing").block())
+                .isInstanceOf(NoSuchKeyException.class);
+    }
+
+    private void writeObject(String key, byte[] file) throws IOException {
+        Path object = root.resolve(BUCKET).resolve(key);
+        Files.createDirectories(object.getParent());
+        Files.write(object, file);
+    }
+
+    private static byte[] bytes(S3ObjectContent content) {
+        return content.content()
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    byte[] chunk = new byte[buffer.remaining()];
+                    buffer.get(chunk);
+                    out.writeBytes(chunk);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray)
+                .block();
+    }
+}
@@ -0,0 +1,68 @@
+package com.amigoscode.s3;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3ObjectCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void canStoreObjectsOffHeap() {
+        // Given
+        S3ObjectCache underTest = new S3ObjectCache(
+                DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), true, meterRegistry
+        );
+        byte[] file = "Hello world".getBytes();
+
+        // When
+        underTest.put("customer", "foo_test", file);
+
+        // Then
+        ByteBuffer actual = underTest.get("customer", "foo_test");
+        assertThat(actual.isDirect()).isTrue();
+        assertThat(actual.isReadOnly()).isTrue();
+        byte[] bytes = new byte[actual.remaining()];
+        actual.get(bytes);
+        assertThat(bytes).isEqualTo(file);
+    }
+
+    @Test
+    void willNotStoreObjectsLargerThanMaxObjectSize() {
+        // Given
+        S3ObjectCache underTest = new S3ObjectCache(
+                DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), false, meterRegistry
+        );
+
+        // When
+        underTest.put("customer", "foo_test", new byte[2048]);
+
+        // Then
+        assertThat(underTest.get("customer", "foo_test")).isNull();
+    }
+
+    @Test
+    void recordsHitsAndMisses() {
+        // Given
+        S3ObjectCache underTest = new S3ObjectCache(
+                DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), false, meterRegistry
+        );
+        underTest.put("customer", "foo_test", "Hello world".getBytes());
+
+        // When
+        underTest.get("customer", "foo_test");
+        underTest.get("customer", "bar_test");
+
+        // Then
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "s3-objects").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "s3-objects").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+}
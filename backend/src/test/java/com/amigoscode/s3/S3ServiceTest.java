@@ -1,19 +1,44 @@
 package com.amigoscode.s3;
 
+import com.amigoscode.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.eq;
@@ -23,13 +48,42 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class S3ServiceTest {
 
+    private static final DataSize MULTIPART_THRESHOLD = DataSize.ofBytes(16);
+    private static final DataSize PART_SIZE = DataSize.ofBytes(5);
+
     @Mock
     private S3Client s3Client;
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+    @TempDir
+    private Path root;
+    private S3ObjectCache objectCache;
     private S3Service underTest;
 
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
     @BeforeEach
     void setUp() {
-        underTest = new S3Service(s3Client);
+        objectCache = new S3ObjectCache(
+                DataSize.ofKilobytes(64),
+                DataSize.ofKilobytes(1),
+                false,
+                new SimpleMeterRegistry()
+        );
+        underTest = new S3Service(
+                s3Client,
+                s3AsyncClient,
+                objectCache,
+                1,
+                MULTIPART_THRESHOLD,
+                PART_SIZE,
+                1,
+                1,
+                false
+        );
     }
 
     @Test
@@ -70,44 +124,241 @@ class S3ServiceTest {
     }
 
     @Test
-    void canGetObject() throws IOException {
+    void canPutObjectStream() throws IOException {
         String bucket = "customer";
         String key = "foo_test";
         byte[] file = "Hello world".getBytes();
 
-        GetObjectRequest getObjectAclRequest = GetObjectRequest.builder()
+        underTest.putObject(bucket, key, new ByteArrayInputStream(file), file.length);
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestArgumentCaptor =
+                ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> requestBodyArgumentCaptor =
+                ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(
+                putObjectRequestArgumentCaptor.capture(),
+                requestBodyArgumentCaptor.capture()
+        );
+
+        PutObjectRequest putObjectRequestArgumentCaptorValue
+                = putObjectRequestArgumentCaptor.getValue();
+
+        assertThat(putObjectRequestArgumentCaptorValue.bucket()).isEqualTo(bucket);
+        assertThat(putObjectRequestArgumentCaptorValue.key()).isEqualTo(key);
+        assertThat(putObjectRequestArgumentCaptorValue.contentLength()).isEqualTo(file.length);
+
+        RequestBody requestBodyArgumentCaptorValue
+                = requestBodyArgumentCaptor.getValue();
+
+        assertThat(requestBodyArgumentCaptorValue.optionalContentLength()).contains((long) file.length);
+        assertThat(
+                requestBodyArgumentCaptorValue.contentStreamProvider()
+                        .newStream()
+                        .readAllBytes()
+        ).isEqualTo(file);
+    }
+
+    @Test
+    void canGetObjectStream() throws IOException {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = "Hello world".getBytes();
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
                 .build();
+        when(s3Client.getObject(eq(getObjectRequest))).thenReturn(responseOf(file));
 
-        ResponseInputStream<GetObjectResponse> res = mock(ResponseInputStream.class);
+        ResponseInputStream<GetObjectResponse> first = underTest.getObjectStream(bucket, key);
+        ResponseInputStream<GetObjectResponse> second = underTest.getObjectStream(bucket, key);
 
-        when(res.readAllBytes()).thenReturn(file);
-        when(s3Client.getObject(eq(getObjectAclRequest))).thenReturn(res);
+        assertThat(first.readAllBytes()).isEqualTo(file);
+        assertThat(second.readAllBytes()).isEqualTo(file);
+        assertThat(second.response().contentLength()).isEqualTo(file.length);
+        verify(s3Client, times(1)).getObject(eq(getObjectRequest));
+    }
 
-        byte[] bytes = underTest.getObject(bucket, key);
+    @Test
+    void willNotCacheObjectsLargerThanMaxObjectSize() {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = new byte[2048];
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        ResponseInputStream<GetObjectResponse> res = responseOf(file);
+        when(s3Client.getObject(eq(getObjectRequest))).thenReturn(res);
+
+        ResponseInputStream<GetObjectResponse> actual = underTest.getObjectStream(bucket, key);
 
-        assertThat(bytes).isEqualTo(file);
+        assertThat(actual).isSameAs(res);
+        assertThat(objectCache.get(bucket, key)).isNull();
     }
 
     @Test
-    void willThrowWhenGetObject() throws IOException {
+    void getObjectStreamUncachedBypassesTheCache() {
         String bucket = "customer";
         String key = "foo_test";
+        byte[] file = "Hello world".getBytes();
+        objectCache.put(bucket, key, "cached".getBytes());
 
-        GetObjectRequest getObjectAclRequest = GetObjectRequest.builder()
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
                 .build();
+        ResponseInputStream<GetObjectResponse> res = responseOf(file);
+        when(s3Client.getObject(eq(getObjectRequest))).thenReturn(res);
+
+        ResponseInputStream<GetObjectResponse> actual = underTest.getObjectStreamUncached(bucket, key);
+
+        assertThat(actual).isSameAs(res);
+        assertThat(objectCache.get(bucket, key)).isNotNull();
+    }
+
+    @Test
+    void putObjectInvalidatesCachedObject() {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = "Hello world".getBytes();
+        objectCache.put(bucket, key, file);
+
+        underTest.putObject(bucket, key, new ByteArrayInputStream(file), file.length);
+
+        assertThat(objectCache.get(bucket, key)).isNull();
+    }
+
+    @Test
+    void canPutObjectAsyncInOneRequest() throws Exception {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = "Hello world".getBytes();
+        objectCache.put(bucket, key, file);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(file), file.length).get();
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestArgumentCaptor =
+                ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<AsyncRequestBody> requestBodyArgumentCaptor =
+                ArgumentCaptor.forClass(AsyncRequestBody.class);
+        verify(s3AsyncClient).putObject(
+                putObjectRequestArgumentCaptor.capture(),
+                requestBodyArgumentCaptor.capture()
+        );
+        assertThat(putObjectRequestArgumentCaptor.getValue().bucket()).isEqualTo(bucket);
+        assertThat(putObjectRequestArgumentCaptor.getValue().key()).isEqualTo(key);
+        assertThat(requestBodyArgumentCaptor.getValue().contentLength()).contains((long) file.length);
+        assertThat(objectCache.get(bucket, key)).isNull();
+        verify(s3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
 
-        ResponseInputStream<GetObjectResponse> res = mock(ResponseInputStream.class);
+    @Test
+    void canPutLargeObjectAsyncAsMultipartUpload() throws Exception {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = new byte[42];
+        new Random().nextBytes(file);
+        S3Service s3Service = new S3Service(
+                s3Client,
+                new FakeS3Async(root, Duration.ZERO),
+                objectCache,
+                1,
+                MULTIPART_THRESHOLD,
+                PART_SIZE,
+                1,
+                1,
+                false
+        );
 
-        when(res.readAllBytes()).thenThrow(new IOException("Cannot read bytes"));
-        when(s3Client.getObject(eq(getObjectAclRequest))).thenReturn(res);
+        try {
+            s3Service.putObjectAsync(bucket, key, new ByteArrayInputStream(file), file.length).get();
+        } finally {
+            s3Service.destroy();
+        }
 
-        assertThatThrownBy( () -> underTest.getObject(bucket, key))
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Cannot read bytes")
-                .hasRootCauseInstanceOf(IOException.class);
+        assertThat(Files.readAllBytes(root.resolve(bucket).resolve(key))).isEqualTo(file);
+    }
+
+    @Test
+    void willAbortMultipartUploadWhenPartFails() {
+        String bucket = "customer";
+        String key = "foo_test";
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        CreateMultipartUploadResponse.builder().uploadId("upload").build()
+                ));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("boom")));
+
+        assertThatThrownBy(() -> underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(new byte[20]), 20).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(SdkClientException.class);
+
+        // the remaining parts are not read once one has failed
+        verify(s3AsyncClient, times(1)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient).abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId("upload")
+                .build());
+    }
+
+    @Test
+    void readsMultipartPartsOnTheirOwnThreads() throws Exception {
+        String bucket = "customer";
+        String key = "foo_test";
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        CreateMultipartUploadResponse.builder().uploadId("upload").build()
+                ));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    threads.add(Thread.currentThread().getName());
+                    return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag").build());
+                });
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(new byte[20]), 20).get();
+
+        // waiting for a permit there never holds up the single PUT bodies
+        assertThat(threads)
+                .hasSize(4)
+                .allMatch(thread -> thread.startsWith("s3-multipart-"));
+    }
+
+    @Test
+    void willRejectPutObjectAsyncPastInFlightLimit() throws Exception {
+        String bucket = "customer";
+        String key = "foo_test";
+        byte[] file = "Hello world".getBytes();
+        CompletableFuture<PutObjectResponse> slowPut = new CompletableFuture<>();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(slowPut)
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        CompletableFuture<Void> first = underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(file), file.length);
+
+        assertThatThrownBy(() -> underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(file), file.length).get())
+                .hasCauseInstanceOf(TooManyRequestsException.class);
+
+        slowPut.complete(PutObjectResponse.builder().build());
+        first.get();
+        underTest.putObjectAsync(bucket, key, new ByteArrayInputStream(file), file.length).get();
+        verify(s3AsyncClient, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    private static ResponseInputStream<GetObjectResponse> responseOf(byte[] file) {
+        return new ResponseInputStream<>(
+                GetObjectResponse.builder()
+                        .contentLength((long) file.length)
+                        .build(),
+                new ByteArrayInputStream(file)
+        );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.amigoscode.s3;
+
+import com.amigoscode.VirtualThreadPinning;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3ServiceVirtualThreadTest {
+
+    private static final String BUCKET = "customer";
+
+    @TempDir
+    private Path root;
+    private S3Service underTest;
+
+    @BeforeEach
+    void setUp() {
+        // nothing is small enough to be cached, every read goes to the slow fake
+        S3ObjectCache objectCache = new S3ObjectCache(
+                DataSize.ofMegabytes(1),
+                DataSize.ofBytes(0),
+                false,
+                new SimpleMeterRegistry()
+        );
+        underTest = new S3Service(
+                new FakeS3(root, Duration.ofMillis(20)),
+                new FakeS3Async(root, Duration.ofMillis(20)),
+                objectCache,
+                64,
+                DataSize.ofMegabytes(8),
+                DataSize.ofMegabytes(5),
+                1,
+                1,
+                true
+        );
+    }
+
+    @Test
+    void detectsPinning() throws Exception {
+        // Given
+        Object monitor = new Object();
+
+        // When
+        var actual = VirtualThreadPinning.pinnedEvents(4, () -> {
+            synchronized (monitor) {
+                Thread.sleep(10);
+            }
+            return null;
+        });
+
+        // Then
+        assertThat(actual).isNotEmpty();
+    }
+
+    @Test
+    void putAndGetDoNotPinVirtualThreads() throws Exception {
+        // Given
+        underTest.putObejct(BUCKET, "image", "bytes".getBytes());
+
+        // When
+        var actual = VirtualThreadPinning.pinnedEvents(200, () -> {
+            underTest.putObejct(BUCKET, "image-" + Thread.currentThread().threadId(), "bytes".getBytes());
+            try (InputStream content = underTest.getObjectStream(BUCKET, "image")) {
+                return content.readAllBytes();
+            }
+        });
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+}
@@ -0,0 +1,139 @@
+package com.amigoscode.security;
+
+import com.amigoscode.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder underTest;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        underTest.destroy();
+    }
+
+    @Test
+    void hashesOnThePoolAndRecordsLatency() {
+        // Given
+        underTest = new BoundedPasswordEncoder(new ThreadRecordingEncoder(), 1, 10, 1, meterRegistry);
+
+        // When
+        String encoded = underTest.encode("password");
+        boolean matches = underTest.matches("password", encoded);
+
+        // Then
+        assertThat(encoded).startsWith("password-hashing-");
+        assertThat(matches).isTrue();
+        assertThat(meterRegistry.get("password.hashing").tag("operation", "encode").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("password.hashing").tag("operation", "matches").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWhenThePoolIsSaturated() throws Exception {
+        // Given
+        underTest = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 0, 1, meterRegistry);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> underTest.encode("first"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.encode("second"))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(underTest.upgradeEncoding("first")).isFalse();
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+    }
+
+    @Test
+    void upgradeEncodingDelegatesWhileThereIsCapacity() {
+        // Given
+        underTest = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 0, 1, meterRegistry);
+
+        // When
+        // Then
+        assertThat(underTest.upgradeEncoding("outdated")).isTrue();
+        assertThat(underTest.upgradeEncoding("current")).isFalse();
+    }
+
+    @Test
+    void bulkHashingQueuesOnItsOwnPoolWhileLoginsAreSaturated() throws Exception {
+        // Given
+        underTest = new BoundedPasswordEncoder(new BlockingLoginEncoder(), 1, 0, 2, meterRegistry);
+        CompletableFuture<String> login = CompletableFuture.supplyAsync(() -> underTest.encode("login"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        List<String> encoded = underTest.encodeAll(List.of("a", "b", "c", "d", "e"));
+
+        // Then
+        assertThat(encoded)
+                .hasSize(5)
+                .allSatisfy(hash -> assertThat(hash).startsWith("bulk-password-hashing-"));
+        assertThat(login).isNotDone();
+        release.countDown();
+        assertThat(login.get(5, TimeUnit.SECONDS)).isEqualTo("login");
+    }
+
+    private static class ThreadRecordingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(Thread.currentThread().getName());
+        }
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return "outdated".equals(encodedPassword);
+        }
+    }
+
+    private class BlockingLoginEncoder extends BlockingEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if ("login".contentEquals(rawPassword)) {
+                return super.encode(rawPassword);
+            }
+            return Thread.currentThread().getName();
+        }
+    }
+}
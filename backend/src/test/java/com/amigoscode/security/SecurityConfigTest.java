@@ -0,0 +1,63 @@
+package com.amigoscode.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecurityConfigTest {
+
+    private final String unprefixedHash = new BCryptPasswordEncoder(4).encode("password");
+    private BoundedPasswordEncoder underTest;
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void unprefixedHashesOfTheCurrentStrengthAreKept() {
+        // Given
+        underTest = passwordEncoder(4, false);
+
+        // When
+        // Then
+        assertThat(underTest.matches("password", unprefixedHash)).isTrue();
+        assertThat(underTest.upgradeEncoding(unprefixedHash)).isFalse();
+        assertThat(underTest.upgradeEncoding(underTest.encode("password"))).isFalse();
+    }
+
+    @Test
+    void unprefixedHashesOfALowerStrengthAreUpgraded() {
+        // Given
+        underTest = passwordEncoder(5, false);
+
+        // When
+        // Then
+        assertThat(underTest.upgradeEncoding(unprefixedHash)).isTrue();
+    }
+
+    @Test
+    void unprefixedHashesAreUpgradedWhenTheMigrationIsSwitchedOn() {
+        // Given
+        underTest = passwordEncoder(4, true);
+
+        // When
+        // Then
+        assertThat(underTest.upgradeEncoding(unprefixedHash)).isTrue();
+    }
+
+    private static BoundedPasswordEncoder passwordEncoder(int bcryptStrength, boolean upgradeUnprefixedHashes) {
+        return new SecurityConfig().passwordEncoder(
+                "bcrypt",
+                bcryptStrength,
+                upgradeUnprefixedHashes,
+                1,
+                10,
+                1,
+                new SimpleMeterRegistry()
+        );
+    }
+}
@@ -5,7 +5,10 @@ import {
     useState
 } from "react";
 
-import {login as performLogin} from "../../services/client.js"
+import {
+    login as performLogin,
+    logout as performLogout
+} from "../../services/client.js"
 import jwtDecode from "jwt-decode";
 
 const AuthContext = createContext({});
@@ -35,6 +38,7 @@ const AuthProvider = ({ children }) => {
                 .then(res => {
                     const jwtToken = res.headers["authorization"];
                     localStorage.setItem("access_token",jwtToken);
+                    localStorage.setItem("refresh_token",res.data.refreshToken);
                     setCustomerFromToken();
                     resolve(res);
                 }).catch(err => {
@@ -45,7 +49,12 @@ const AuthProvider = ({ children }) => {
     }
 
     const logout = () => {
+        const refreshToken = localStorage.getItem("refresh_token");
+        if(refreshToken){
+            performLogout(refreshToken).catch(() => {});
+        }
         localStorage.removeItem("access_token");
+        localStorage.removeItem("refresh_token");
         setCustomer(null);
     }
 
@@ -55,7 +64,9 @@ const AuthProvider = ({ children }) => {
             return false;
         }
         const { exp: expiration } = jwtDecode(token);
-        if(Date.now() > expiration * 1000){
+        // an expired access token is renewed on the next request while
+        // there is a refresh token
+        if(Date.now() > expiration * 1000 && !localStorage.getItem("refresh_token")){
             logout();
             return false;
         }
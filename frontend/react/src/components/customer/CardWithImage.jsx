@@ -24,7 +24,7 @@ import {customerProfilePictureUrl, deleteCustomer} from "../../services/client.j
 import {errorNotification, successNotification} from "../../services/notification.js";
 import UpdateCustomerDrawer from "./UpdateCustomerDrawer.jsx";
 
-export default function CardWithImage({id, name, email, age, gender, fetchCustomers}) {
+export default function CardWithImage({id, name, email, age, gender, profileImageId, version, fetchCustomers}) {
 
     const genderURL = gender === "MALE" ? "men" : "women";
     const { isOpen, onOpen, onClose } = useDisclosure();
@@ -52,7 +52,7 @@ export default function CardWithImage({id, name, email, age, gender, fetchCustom
                 <Flex justify={'center'} mt={-12}>
                     <Avatar
                         size={'xl'}
-                        src={customerProfilePictureUrl(id)}
+                        src={customerProfilePictureUrl(id, profileImageId, 'medium')}
                         alt={'Author'}
                         css={{
                             border: '2px solid white',
@@ -77,6 +77,7 @@ export default function CardWithImage({id, name, email, age, gender, fetchCustom
                             fetchCustomers={fetchCustomers}
                             initialValues={{ name, email, age }}
                             customerId={id}
+                            version={version}
                         />
                     </Stack>
                     <Stack>
@@ -14,7 +14,7 @@ import {FaWrench} from "react-icons/fa";
 import UpdateCustomerForm from "./UpdateCustomerForm.jsx";
 import React from "react";
 
-const UpdateCustomerDrawer = ({ fetchCustomers, initialValues, customerId }) => {
+const UpdateCustomerDrawer = ({ fetchCustomers, initialValues, customerId, version }) => {
     const { isOpen, onOpen, onClose } = useDisclosure()
     return <>
         <Button
@@ -41,6 +41,7 @@ const UpdateCustomerDrawer = ({ fetchCustomers, initialValues, customerId }) =>
                         fetchCustomers={fetchCustomers}
                         initialValues={initialValues}
                         customerId={customerId}
+                        version={version}
                     />
                 </DrawerBody>
 
@@ -49,7 +49,13 @@ const MyDropzone = ({ customerId, fetchCustomers }) => {
         uploadCustomerProfilePicture(
             customerId,
             formData
-        ).then(() => {
+        ).then(res => {
+            if (res.status === 202) {
+                // accepted, the picture shows up once it is stored
+                successNotification("Success","Profile picture uploaded, it will show up shortly")
+                setTimeout(fetchCustomers, 3000)
+                return
+            }
             successNotification("Success","Profile picture uploaded")
             fetchCustomers()
         }).catch(() => {
@@ -79,7 +85,7 @@ const MyDropzone = ({ customerId, fetchCustomers }) => {
 }
 
 // And now we can use these
-const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId }) => {
+const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId, version }) => {
     return (
         <>
             <VStack spacing={'5'} mb={'5'}>
@@ -107,7 +113,9 @@ const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId }) => {
                 })}
                 onSubmit={(updatedCustomer, {setSubmitting}) => {
                     setSubmitting(true);
-                    updateCustomer(customerId,updatedCustomer)
+                    // the version we rendered, the update is rejected if someone
+                    // else changed the customer since
+                    updateCustomer(customerId, {...updatedCustomer, version})
                         .then(res => {
                             console.log(res);
                             successNotification(
@@ -122,6 +130,10 @@ const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId }) => {
                                 err.code,
                                 err.response.data.message
                             )
+                            if (err.response?.status === 409) {
+                                // reload so the next attempt starts from the current customer
+                                fetchCustomers();
+                            }
                         })
                     .finally(() => {
                         setSubmitting(false);
@@ -32,8 +32,9 @@ const Signup = () =>  {
                     />
                     <Heading fontSize={'2xl'} mb={15}>Register your account</Heading>
                     <CreateCustomerForm
-                        onSuccess={(token) => {
+                        onSuccess={(token, refreshToken) => {
                             localStorage.setItem("access_token",token);
+                            localStorage.setItem("refresh_token",refreshToken);
                             setCustomerFromToken();
                             navigate("/dashboard");
                         }}
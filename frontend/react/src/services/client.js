@@ -62,6 +62,67 @@ export const login = async  (usernameAndPassword) => {
     }
 }
 
+export const refreshSession = async (refreshToken) => {
+    try{
+        return await axios.post(
+            `${import.meta.env.VITE_API_BASE_URL}/api/v1/auth/refresh`,
+            { refreshToken }
+        );
+    } catch(e){
+        throw e;
+    }
+}
+
+export const logout = async (refreshToken) => {
+    try{
+        return await axios.post(
+            `${import.meta.env.VITE_API_BASE_URL}/api/v1/auth/logout`,
+            { refreshToken }
+        );
+    } catch(e){
+        throw e;
+    }
+}
+
+// refresh tokens are single use, so requests failing at the same time
+// share one refresh instead of each spending the token
+let pendingRefresh = null;
+
+const refreshAccessToken = () => {
+    if (!pendingRefresh) {
+        pendingRefresh = refreshSession(localStorage.getItem("refresh_token"))
+            .then(res => {
+                localStorage.setItem("access_token", res.data.token);
+                localStorage.setItem("refresh_token", res.data.refreshToken);
+                return res.data.token;
+            })
+            .catch(e => {
+                localStorage.removeItem("access_token");
+                localStorage.removeItem("refresh_token");
+                throw e;
+            })
+            .finally(() => {
+                pendingRefresh = null;
+            });
+    }
+    return pendingRefresh;
+}
+
+axios.interceptors.response.use(undefined, async (error) => {
+    const request = error.config;
+    const status = error.response?.status;
+    if (!request || request._retried
+        || (status !== 401 && status !== 403)
+        || request.url.includes("/api/v1/auth/")
+        || !localStorage.getItem("refresh_token")) {
+        throw error;
+    }
+    request._retried = true;
+    const token = await refreshAccessToken();
+    request.headers.Authorization = `Bearer ${token}`;
+    return axios(request);
+});
+
 export const uploadCustomerProfilePicture= async (id,formData) => {
     try {
         return await axios.post(
@@ -77,5 +138,11 @@ export const uploadCustomerProfilePicture= async (id,formData) => {
     }
 }
 
-export const customerProfilePictureUrl = (id) =>
-    `${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}/profile-image`;
\ No newline at end of file
+export const customerProfilePictureUrl = (id, profileImageId, size) => {
+    const params = new URLSearchParams();
+    if (profileImageId) params.append('v', profileImageId);
+    if (size) params.append('size', size);
+    const query = params.toString();
+    return `${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}/profile-image` +
+        (query ? `?${query}` : '');
+}
\ No newline at end of file